@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Handles system input stream reading.
@@ -11,9 +12,20 @@ public abstract class AbstractSystemInputReader {
      * @throws IOException if an I/O error occurs
      */
     public void readSystemInput() throws IOException {
+        readInput(System.in);
+    }
+
+    /**
+     * Reads the specified input stream line by line, as {@link #readSystemInput()} does for
+     * system input.
+     *
+     * @param in input stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void readInput(InputStream in) throws IOException {
         StringBuilder line = new StringBuilder();
         int c;
-        while ((c = System.in.read()) >= 0) {
+        while ((c = in.read()) >= 0) {
             if (c == '\r' || c == '\n') {
                 processLine(line.toString().toLowerCase().trim());
                 line.setLength(0);
@@ -0,0 +1,136 @@
+/**
+ * Spatial hash of ant locations by team.  The torus is split into fixed-size square buckets,
+ * so radius queries only visit the buckets overlapping the query's bounding box instead of
+ * probing every cell of a stencil.
+ */
+public class AntIndex {
+
+    /**
+     * Team filter matching every enemy team (any team other than mine, team 0).
+     */
+    public static final int ALL_ENEMIES = -1;
+
+    /**
+     * Default bucket edge length, in cells.
+     */
+    public static final int DEFAULT_BUCKET_SIZE = 8;
+
+    private final int _rows;
+    private final int _cols;
+    private final int _bucketSize;
+    private final int _bucketRows;
+    private final int _bucketCols;
+    private final CellList[] _buckets;
+    // team + 1 of the ant on each cell, 0 if none
+    private final int[] _occupants;
+    private final int[] _rowBuckets;
+    private final int[] _colBuckets;
+
+    public AntIndex(int rows, int cols, int bucketSize) {
+        _rows = rows;
+        _cols = cols;
+        _bucketSize = bucketSize;
+        _bucketRows = (rows + bucketSize - 1) / bucketSize;
+        _bucketCols = (cols + bucketSize - 1) / bucketSize;
+        _buckets = new CellList[_bucketRows * _bucketCols];
+        for (int i = 0; i < _buckets.length; i++) {
+            _buckets[i] = new CellList(4);
+        }
+        _occupants = new int[rows * cols];
+        _rowBuckets = new int[_bucketRows];
+        _colBuckets = new int[_bucketCols];
+    }
+
+    public void add(int cell, int team) {
+        if (_occupants[cell] == 0) {
+            _buckets[bucketOf(cell)].add(cell);
+        }
+        _occupants[cell] = team + 1;
+    }
+
+    public void remove(int cell) {
+        if (_occupants[cell] != 0) {
+            _buckets[bucketOf(cell)].removeValue(cell);
+            _occupants[cell] = 0;
+        }
+    }
+
+    /**
+     * @param cell cell id
+     * @return team of the ant on <code>cell</code>, or -1 if there is none
+     */
+    public int getTeam(int cell) {
+        return _occupants[cell] - 1;
+    }
+
+    /**
+     * Collects the ants of the specified team within a squared radius of a cell.
+     *
+     * @param cell    center cell id
+     * @param radius2 squared radius
+     * @param team    team to match, or {@link #ALL_ENEMIES}
+     * @param out     receives matching ant cell ids; not cleared first
+     * @return number of ants added to <code>out</code>
+     */
+    public int queryWithin(int cell, int radius2, int team, CellList out) {
+        final int row = cell / _cols;
+        final int col = cell - row * _cols;
+        final int reach = (int) Math.sqrt(radius2);
+        final int rowBuckets = span(row, reach, _rows, _rowBuckets);
+        final int colBuckets = span(col, reach, _cols, _colBuckets);
+        int found = 0;
+        for (int i = 0; i < rowBuckets; i++) {
+            for (int j = 0; j < colBuckets; j++) {
+                CellList bucket = _buckets[_rowBuckets[i] * _bucketCols + _colBuckets[j]];
+                for (int k = 0; k < bucket.size(); k++) {
+                    final int candidate = bucket.get(k);
+                    final int occupant = _occupants[candidate] - 1;
+                    if (team == ALL_ENEMIES ? occupant <= 0 : occupant != team) {
+                        continue;
+                    }
+                    if (distance2(row, col, candidate) <= radius2) {
+                        out.add(candidate);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int distance2(int row, int col, int cell) {
+        int rowDelta = Math.abs(cell / _cols - row);
+        int colDelta = Math.abs(cell % _cols - col);
+        rowDelta = Math.min(rowDelta, _rows - rowDelta);
+        colDelta = Math.min(colDelta, _cols - colDelta);
+        return rowDelta * rowDelta + colDelta * colDelta;
+    }
+
+    // Distinct bucket indexes overlapping [center - reach, center + reach] along one axis
+    private int span(int center, int reach, int extent, int[] out) {
+        int remaining = Math.min(reach * 2 + 1, extent);
+        int pos = (center - reach) % extent;
+        if (pos < 0) {
+            pos += extent;
+        }
+        int count = 0;
+        while (remaining > 0) {
+            final int bucket = pos / _bucketSize;
+            if (count > 0 && bucket == out[0]) {
+                // Wrapped back around into the first bucket
+                break;
+            }
+            out[count++] = bucket;
+            final int bucketEnd = Math.min((bucket + 1) * _bucketSize, extent);
+            remaining -= bucketEnd - pos;
+            pos = (bucketEnd == extent) ? 0 : bucketEnd;
+        }
+        return count;
+    }
+
+    private int bucketOf(int cell) {
+        final int row = cell / _cols;
+        final int col = cell - row * _cols;
+        return (row / _bucketSize) * _bucketCols + col / _bucketSize;
+    }
+}
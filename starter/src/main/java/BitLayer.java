@@ -0,0 +1,228 @@
+import java.util.Arrays;
+
+/**
+ * One bit per cell occupancy layer (water, ants, food, vision, ...) packed into
+ * <code>long</code> words, 64 cells per word.  Each map row starts on a word boundary, and bits
+ * past the last column of a row are always zero.
+ *
+ * Set operations, torus-aware shifts and disc dilation work a word at a time, so questions
+ * like "which cells are within attack range of any enemy" cost a few passes over
+ * <code>rows * ceil(cols / 64)</code> words instead of per-cell stencil loops.
+ */
+public final class BitLayer {
+
+    private final int _rows;
+    private final int _cols;
+    private final int _wordsPerRow;
+    private final long _lastWordMask;
+    private final long[] _words;
+    // Scratch space for dilation, allocated on first use
+    private BitLayer[] _spans;
+    private long[] _rowScratch;
+
+    public BitLayer(int rows, int cols) {
+        _rows = rows;
+        _cols = cols;
+        _wordsPerRow = (cols + 63) >>> 6;
+        _lastWordMask = ((cols & 63) == 0) ? -1L : (1L << (cols & 63)) - 1;
+        _words = new long[rows * _wordsPerRow];
+    }
+
+    public int getRows() {
+        return _rows;
+    }
+
+    public int getCols() {
+        return _cols;
+    }
+
+    public boolean get(int cell) {
+        final int row = cell / _cols;
+        final int col = cell - row * _cols;
+        return (_words[row * _wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    public void set(int cell) {
+        final int row = cell / _cols;
+        final int col = cell - row * _cols;
+        _words[row * _wordsPerRow + (col >>> 6)] |= 1L << col;
+    }
+
+    public void clear(int cell) {
+        final int row = cell / _cols;
+        final int col = cell - row * _cols;
+        _words[row * _wordsPerRow + (col >>> 6)] &= ~(1L << col);
+    }
+
+    public void clear() {
+        Arrays.fill(_words, 0L);
+    }
+
+    public void copyFrom(BitLayer other) {
+        System.arraycopy(other._words, 0, _words, 0, _words.length);
+    }
+
+    public void or(BitLayer other) {
+        for (int i = 0; i < _words.length; i++) {
+            _words[i] |= other._words[i];
+        }
+    }
+
+    public void and(BitLayer other) {
+        for (int i = 0; i < _words.length; i++) {
+            _words[i] &= other._words[i];
+        }
+    }
+
+    public void andNot(BitLayer other) {
+        for (int i = 0; i < _words.length; i++) {
+            _words[i] &= ~other._words[i];
+        }
+    }
+
+    public boolean intersects(BitLayer other) {
+        for (int i = 0; i < _words.length; i++) {
+            if ((_words[i] & other._words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        for (long word : _words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : _words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Sets this layer to <code>src</code> shifted by the specified offset, wrapping around the
+     * torus.  The bit for cell (r, c) of <code>src</code> ends up at (r + rowDelta, c + colDelta).
+     *
+     * @param src      layer to shift; may not be this layer
+     * @param rowDelta row offset
+     * @param colDelta column offset
+     * @return this layer
+     */
+    public BitLayer shift(BitLayer src, int rowDelta, int colDelta) {
+        clear();
+        orShifted(src, rowDelta, colDelta);
+        return this;
+    }
+
+    /**
+     * Sets this layer to every cell within the squared radius of any cell set in
+     * <code>src</code>, i.e. the union of <code>src</code> shifted by every offset in the
+     * corresponding {@link Stencil}.
+     *
+     * @param src     layer to dilate; may not be this layer
+     * @param radius2 squared radius
+     * @return this layer
+     */
+    public BitLayer dilate(BitLayer src, int radius2) {
+        final int reach = (int) Math.sqrt(radius2);
+        if (_spans == null || _spans.length < reach + 1) {
+            _spans = new BitLayer[reach + 1];
+        }
+        // _spans[w] holds src dilated horizontally by w columns in each direction
+        for (int w = 0; w <= reach; w++) {
+            if (_spans[w] == null) {
+                _spans[w] = new BitLayer(_rows, _cols);
+            }
+            if (w == 0) {
+                _spans[0].copyFrom(src);
+            } else {
+                _spans[w].copyFrom(_spans[w - 1]);
+                _spans[w].orShifted(_spans[w - 1], 0, 1);
+                _spans[w].orShifted(_spans[w - 1], 0, -1);
+            }
+        }
+        clear();
+        for (int rowDelta = -reach; rowDelta <= reach; rowDelta++) {
+            int width = (int) Math.sqrt(radius2 - rowDelta * rowDelta);
+            orShifted(_spans[width], rowDelta, 0);
+        }
+        return this;
+    }
+
+    // this |= src shifted by (rowDelta, colDelta)
+    private void orShifted(BitLayer src, int rowDelta, int colDelta) {
+        rowDelta %= _rows;
+        if (rowDelta < 0) {
+            rowDelta += _rows;
+        }
+        colDelta %= _cols;
+        if (colDelta < 0) {
+            colDelta += _cols;
+        }
+        if (_rowScratch == null) {
+            _rowScratch = new long[_wordsPerRow * 2];
+        }
+        for (int row = 0; row < _rows; row++) {
+            int srcRow = row - rowDelta;
+            if (srcRow < 0) {
+                srcRow += _rows;
+            }
+            final int srcOffset = srcRow * _wordsPerRow;
+            final int dstOffset = row * _wordsPerRow;
+            if (colDelta == 0) {
+                for (int w = 0; w < _wordsPerRow; w++) {
+                    _words[dstOffset + w] |= src._words[srcOffset + w];
+                }
+            } else {
+                // Rotate the row within its cols-bit width:  (bits << k) | (bits >>> (cols - k))
+                shiftLeft(src._words, srcOffset, _rowScratch, 0, colDelta);
+                shiftRight(src._words, srcOffset, _rowScratch, _wordsPerRow, _cols - colDelta);
+                for (int w = 0; w < _wordsPerRow; w++) {
+                    _words[dstOffset + w] |= _rowScratch[w] | _rowScratch[_wordsPerRow + w];
+                }
+                _words[dstOffset + _wordsPerRow - 1] &= _lastWordMask;
+            }
+        }
+    }
+
+    // dst[dstOffset..] = src[srcOffset..] << bits, across one row's worth of words
+    private void shiftLeft(long[] src, int srcOffset, long[] dst, int dstOffset, int bits) {
+        final int wordShift = bits >>> 6;
+        final int bitShift = bits & 63;
+        for (int w = _wordsPerRow - 1; w >= 0; w--) {
+            final int from = w - wordShift;
+            long value = 0L;
+            if (from >= 0) {
+                value = src[srcOffset + from] << bitShift;
+                if (bitShift != 0 && from > 0) {
+                    value |= src[srcOffset + from - 1] >>> (64 - bitShift);
+                }
+            }
+            dst[dstOffset + w] = value;
+        }
+    }
+
+    // dst[dstOffset..] = src[srcOffset..] >>> bits, across one row's worth of words
+    private void shiftRight(long[] src, int srcOffset, long[] dst, int dstOffset, int bits) {
+        final int wordShift = bits >>> 6;
+        final int bitShift = bits & 63;
+        for (int w = 0; w < _wordsPerRow; w++) {
+            final int from = w + wordShift;
+            long value = 0L;
+            if (from < _wordsPerRow) {
+                value = src[srcOffset + from] >>> bitShift;
+                if (bitShift != 0 && from + 1 < _wordsPerRow) {
+                    value |= src[srcOffset + from + 1] << (64 - bitShift);
+                }
+            }
+            dst[dstOffset + w] = value;
+        }
+    }
+}
@@ -1,15 +1,63 @@
+import java.io.IOException;
+import java.io.InputStream;
+
 /**
  * Provides basic game state handling.
  */
 public abstract class Bot extends AbstractSystemInputParser {
 
+    // Landmark distance tables recomputed per turn once new water makes them stale
+    private static final int LANDMARK_REFRESHES_PER_TURN = 2;
+
+    private final GameContext context;
+
+    /**
+     * Creates a bot playing a single game over standard input and output.
+     */
+    protected Bot() {
+        this(new GameContext());
+    }
+
+    /**
+     * Creates a bot whose game state is owned by the specified context.
+     *
+     * @param context game context
+     */
+    protected Bot(GameContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns the context owning this bot's game state.
+     *
+     * @return game context
+     */
+    public GameContext getContext() {
+        return context;
+    }
+
+    /**
+     * Plays the game on the specified input, closing the context once the input ends.
+     *
+     * @param in input stream
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void readInput(InputStream in) throws IOException {
+        try {
+            super.readInput(in);
+        } finally {
+            context.close();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void setup(int loadTime, int turnTime, int rows, int cols, int turns, int viewRadius2,
                       int attackRadius2, int spawnRadius2) {
-        Registry.initialize(loadTime, turnTime, rows, cols, turns, viewRadius2, attackRadius2, spawnRadius2);
+        context.initialize(loadTime, turnTime, rows, cols, turns, viewRadius2, attackRadius2, spawnRadius2);
     }
 
     /**
@@ -17,15 +65,17 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void beforeUpdate() {
-        Registry.Instance.setTurnStartTime(System.currentTimeMillis());
-        Registry.Instance.clearMyAnts();
-        Registry.Instance.clearEnemyAnts();
-        Registry.Instance.clearMyHills();
-        Registry.Instance.clearEnemyHills();
-        Registry.Instance.clearFood();
-        Registry.Instance.clearDeadAnts();
-        Registry.Instance.getOrders().clear();
-        Registry.Instance.clearVision();
+        Registry registry = context.getRegistry();
+        registry.setTurnStartTime(System.currentTimeMillis());
+        registry.nextTurn();
+        registry.clearChangedCells();
+        registry.clearMyAnts();
+        registry.clearEnemyAnts();
+        registry.clearMyHills();
+        registry.clearEnemyHills();
+        registry.clearFood();
+        registry.clearDeadAnts();
+        registry.getOrders().clear();
     }
 
     /**
@@ -33,7 +83,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void addWater(int row, int col) {
-        Registry.Instance.update(Ilk.WATER, new Tile(row, col));
+        context.getRegistry().update(Ilk.WATER, context.getRegistry().tileAt(row, col));
     }
 
     /**
@@ -42,9 +92,9 @@ public abstract class Bot extends AbstractSystemInputParser {
     @Override
     public void addAnt(int row, int col, int owner) {
         if (owner > 0) {
-            Registry.Instance.update(Ilk.ENEMY_ANT, new Tile(row, col), owner);
+            context.getRegistry().update(Ilk.ENEMY_ANT, context.getRegistry().tileAt(row, col), owner);
         } else {
-            Registry.Instance.update(Ilk.MY_ANT, new Tile(row, col));
+            context.getRegistry().update(Ilk.MY_ANT, context.getRegistry().tileAt(row, col));
         }
     }
 
@@ -53,7 +103,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void addFood(int row, int col) {
-        Registry.Instance.update(Ilk.FOOD, new Tile(row, col));
+        context.getRegistry().update(Ilk.FOOD, context.getRegistry().tileAt(row, col));
     }
 
     /**
@@ -61,7 +111,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void removeAnt(int row, int col, int owner) {
-        Registry.Instance.update(Ilk.DEAD, new Tile(row, col));
+        context.getRegistry().update(Ilk.DEAD, context.getRegistry().tileAt(row, col));
     }
 
     /**
@@ -69,7 +119,7 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void addHill(int row, int col, int owner) {
-        Registry.Instance.updateHills(owner, new Tile(row, col));
+        context.getRegistry().updateHills(owner, context.getRegistry().tileAt(row, col));
     }
 
     /**
@@ -77,6 +127,18 @@ public abstract class Bot extends AbstractSystemInputParser {
      */
     @Override
     public void afterUpdate() {
-        Registry.Instance.setVision();
+        context.getRegistry().setVision();
+        context.getRegistry().publishSnapshot();
+        context.getLandmarks().refresh(LANDMARK_REFRESHES_PER_TURN);
+        context.getHillDistances().update(context.getRegistry().getMyHills());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finishTurn() {
+        context.getOutput().println("go");
+        context.getOutput().flush();
     }
 }
@@ -0,0 +1,118 @@
+/**
+ * Binary min-heap of cell ids keyed by int priority, with in-place decrease-key.  Each cell's
+ * heap position is tracked in an array indexed by cell id, so a cell may be in the heap at most
+ * once.
+ */
+public final class CellHeap {
+
+    private final int[] _heap;
+    private final int[] _key;
+    private final int[] _position;
+    private int _size = 0;
+
+    /**
+     * @param cells number of cells on the map
+     */
+    public CellHeap(int cells) {
+        _heap = new int[cells];
+        _key = new int[cells];
+        _position = new int[cells];
+    }
+
+    public void clear() {
+        _size = 0;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * @param cell cell id, not currently in the heap
+     * @param key  priority
+     */
+    public void add(int cell, int key) {
+        final int position = _size++;
+        _heap[position] = cell;
+        _key[position] = key;
+        _position[cell] = position;
+        siftUp(position);
+    }
+
+    /**
+     * @param cell cell id, currently in the heap
+     * @param key  new priority, no greater than the current one
+     */
+    public void decreaseKey(int cell, int key) {
+        final int position = _position[cell];
+        _key[position] = key;
+        siftUp(position);
+    }
+
+    /**
+     * @return priority of the minimum cell
+     */
+    public int peekKey() {
+        return _key[0];
+    }
+
+    /**
+     * Removes and returns the cell with the lowest priority.
+     *
+     * @return cell id
+     */
+    public int poll() {
+        final int top = _heap[0];
+        if (--_size > 0) {
+            move(_size, 0);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int position) {
+        final int cell = _heap[position];
+        final int key = _key[position];
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (_key[parent] <= key) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        _heap[position] = cell;
+        _key[position] = key;
+        _position[cell] = position;
+    }
+
+    private void siftDown(int position) {
+        final int cell = _heap[position];
+        final int key = _key[position];
+        final int half = _size >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            if (child + 1 < _size && _key[child + 1] < _key[child]) {
+                child++;
+            }
+            if (key <= _key[child]) {
+                break;
+            }
+            move(child, position);
+            position = child;
+        }
+        _heap[position] = cell;
+        _key[position] = key;
+        _position[cell] = position;
+    }
+
+    private void move(int from, int to) {
+        _heap[to] = _heap[from];
+        _key[to] = _key[from];
+        _position[_heap[to]] = to;
+    }
+}
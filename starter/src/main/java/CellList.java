@@ -0,0 +1,53 @@
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive cell ids, reused across turns to avoid boxing and garbage.
+ */
+public final class CellList {
+
+    private int[] _cells;
+    private int _size = 0;
+
+    public CellList() {
+        this(16);
+    }
+
+    public CellList(int capacity) {
+        _cells = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int cell) {
+        if (_size == _cells.length) {
+            _cells = Arrays.copyOf(_cells, _size * 2);
+        }
+        _cells[_size++] = cell;
+    }
+
+    /**
+     * Removes the first occurrence of a cell id, moving the last entry into its place.
+     *
+     * @param cell cell id to remove
+     * @return true if the cell was present
+     */
+    public boolean removeValue(int cell) {
+        for (int i = 0; i < _size; i++) {
+            if (_cells[i] == cell) {
+                _cells[i] = _cells[--_size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int get(int i) {
+        return _cells[i];
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public void clear() {
+        _size = 0;
+    }
+}
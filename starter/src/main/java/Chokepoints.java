@@ -0,0 +1,464 @@
+import java.util.Arrays;
+
+/**
+ * Structural analysis of the passable grid:  articulation points, corridor widths and minimum
+ * vertex cuts around a hill.
+ *
+ * <ul>
+ * <li>Articulation points, the cells whose loss would split a connected region, come from an
+ * iterative Tarjan search, run over the whole map the first time they're asked for.  New water
+ * can only change the points in the region it fell in, so after that only the regions around
+ * water discovered since the last query are searched again.</li>
+ * <li>A cell's corridor width is the shorter of the horizontal and vertical runs of passable
+ * cells through it.  New water only affects its own row and column, so only those are
+ * re-scanned.</li>
+ * <li>The minimum cut around a hill is the smallest set of cells separating the cells within
+ * walking distance r of the hill from those at distance 2r.  Every route in from farther out
+ * crosses each distance in between, so holding the cut cells holds every approach.  It's found
+ * by unit-capacity max flow over the band between the two distances, with each cell split in
+ * two so that cells rather than edges carry the capacity.</li>
+ * </ul>
+ */
+public class Chokepoints implements Registry.TerrainListener {
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private static final LogFacade _log = LogFacade.get(Chokepoints.class);
+
+    private final Registry _registry;
+    private final int _rows;
+    private final int _cols;
+
+    // Articulation points, valid apart from the regions around _newWater once searched
+    private final boolean[] _articulation;
+    private int _articulationCount = 0;
+    private boolean _articulationSearched = false;
+    private final CellList _newWater = new CellList();
+    // Cells reached by the current refresh are stamped with its generation
+    private final int[] _searchStamp;
+    private int _searchGeneration = 0;
+    private final int[] _discovery;
+    private final int[] _low;
+    private final int[] _parent;
+    private final byte[] _nextAim;
+    private final int[] _stack;
+
+    // Corridor widths, with rows and columns to re-scan
+    private final int[] _horizontalRun;
+    private final int[] _verticalRun;
+    private final boolean[] _dirtyRows;
+    private final boolean[] _dirtyCols;
+    private boolean _widthsDirty = true;
+
+    // Scratch space for minimum cuts
+    private final int[] _distance;
+    private final int[] _distanceStamp;
+    private final int[] _bandIndex;
+    private final int[] _queue;
+    private int _generation = 0;
+
+    public Chokepoints(Registry registry) {
+        _registry = registry;
+        _rows = registry.getRows();
+        _cols = registry.getCols();
+        final int cells = registry.getCellCount();
+        _articulation = new boolean[cells];
+        _searchStamp = new int[cells];
+        _discovery = new int[cells];
+        _low = new int[cells];
+        _parent = new int[cells];
+        _nextAim = new byte[cells];
+        _stack = new int[cells];
+        _horizontalRun = new int[cells];
+        _verticalRun = new int[cells];
+        _dirtyRows = new boolean[_rows];
+        _dirtyCols = new boolean[_cols];
+        Arrays.fill(_dirtyRows, true);
+        Arrays.fill(_dirtyCols, true);
+        _distance = new int[cells];
+        _distanceStamp = new int[cells];
+        _bandIndex = new int[cells];
+        _queue = new int[cells];
+    }
+
+    /**
+     * @param cell newly discovered water cell
+     */
+    @Override
+    public void waterDiscovered(int cell) {
+        _dirtyRows[cell / _cols] = true;
+        _dirtyCols[cell % _cols] = true;
+        _widthsDirty = true;
+        if (_articulationSearched) {
+            _newWater.add(cell);
+        }
+    }
+
+    // --- Articulation points ---
+
+    /**
+     * @param cell cell id
+     * @return true if losing the cell would split its connected region of passable cells
+     */
+    public boolean isArticulationPoint(int cell) {
+        refreshArticulationPoints();
+        return _articulation[cell];
+    }
+
+    /**
+     * @return number of articulation points on the map as known
+     */
+    public int getArticulationPointCount() {
+        refreshArticulationPoints();
+        return _articulationCount;
+    }
+
+    private void refreshArticulationPoints() {
+        if (_articulationSearched && _newWater.size() == 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        if (++_searchGeneration == 0) {
+            Arrays.fill(_searchStamp, 0);
+            _searchGeneration = 1;
+        }
+        int time = 0;
+        if (!_articulationSearched) {
+            for (int root = 0; root < _searchStamp.length; root++) {
+                if (_searchStamp[root] != _searchGeneration && _registry.isPassable(root)) {
+                    time = search(root, time);
+                }
+            }
+            _articulationSearched = true;
+        } else {
+            // The regions the new water fell in are whatever is left connected to its neighbours;
+            // searching them again clears and re-marks every point they held
+            for (int i = 0; i < _newWater.size(); i++) {
+                final int water = _newWater.get(i);
+                unmark(water);
+                for (Aim aim : AIMS) {
+                    final int neighbor = _registry.neighbor(water, aim);
+                    if (_searchStamp[neighbor] != _searchGeneration && _registry.isPassable(neighbor)) {
+                        time = search(neighbor, time);
+                    }
+                }
+            }
+        }
+        _log.debug("Found %d articulation point(s) searching %d cell(s) for %d new water cell(s) in %d ms",
+                   _articulationCount, time, _newWater.size(), System.currentTimeMillis() - start);
+        _newWater.clear();
+    }
+
+    // Iterative Tarjan depth-first search of one connected region, continuing the discovery times
+    private int search(int root, int time) {
+        final Registry r = _registry;
+        int depth = 0;
+        int rootChildren = 0;
+        visit(root);
+        _discovery[root] = _low[root] = ++time;
+        _parent[root] = -1;
+        _nextAim[root] = 0;
+        _stack[depth++] = root;
+        while (depth > 0) {
+            final int cell = _stack[depth - 1];
+            if (_nextAim[cell] < AIMS.length) {
+                final int neighbor = r.neighbor(cell, AIMS[_nextAim[cell]++]);
+                if (!r.isPassable(neighbor)) {
+                    continue;
+                }
+                if (_searchStamp[neighbor] != _searchGeneration) {
+                    visit(neighbor);
+                    _parent[neighbor] = cell;
+                    _discovery[neighbor] = _low[neighbor] = ++time;
+                    _nextAim[neighbor] = 0;
+                    _stack[depth++] = neighbor;
+                    if (cell == root) {
+                        rootChildren++;
+                    }
+                } else if (neighbor != _parent[cell] && _discovery[neighbor] < _low[cell]) {
+                    _low[cell] = _discovery[neighbor];
+                }
+            } else {
+                depth--;
+                final int parent = _parent[cell];
+                if (parent >= 0) {
+                    if (_low[cell] < _low[parent]) {
+                        _low[parent] = _low[cell];
+                    }
+                    if (parent != root && _low[cell] >= _discovery[parent]) {
+                        mark(parent);
+                    }
+                }
+            }
+        }
+        if (rootChildren > 1) {
+            mark(root);
+        }
+        return time;
+    }
+
+    // Stamps a cell as reached by this refresh, dropping whatever an earlier search found for it
+    private void visit(int cell) {
+        _searchStamp[cell] = _searchGeneration;
+        unmark(cell);
+    }
+
+    private void unmark(int cell) {
+        if (_articulation[cell]) {
+            _articulation[cell] = false;
+            _articulationCount--;
+        }
+    }
+
+    private void mark(int cell) {
+        if (!_articulation[cell]) {
+            _articulation[cell] = true;
+            _articulationCount++;
+        }
+    }
+
+    // --- Corridor widths ---
+
+    /**
+     * @param cell cell id
+     * @return the shorter of the horizontal and vertical runs of passable cells through the
+     *         cell, or 0 for water
+     */
+    public int getCorridorWidth(int cell) {
+        refreshWidths();
+        return Math.min(_horizontalRun[cell], _verticalRun[cell]);
+    }
+
+    private void refreshWidths() {
+        if (!_widthsDirty) {
+            return;
+        }
+        for (int row = 0; row < _rows; row++) {
+            if (_dirtyRows[row]) {
+                scanRuns(row * _cols, 1, _cols, _horizontalRun);
+                _dirtyRows[row] = false;
+            }
+        }
+        for (int col = 0; col < _cols; col++) {
+            if (_dirtyCols[col]) {
+                scanRuns(col, _cols, _rows, _verticalRun);
+                _dirtyCols[col] = false;
+            }
+        }
+        _widthsDirty = false;
+    }
+
+    // Run lengths along one row or column, which wraps around the torus
+    private void scanRuns(int first, int stride, int length, int[] runs) {
+        int water = -1;
+        for (int i = 0; i < length; i++) {
+            if (!_registry.isPassable(first + i * stride)) {
+                water = i;
+                break;
+            }
+        }
+        if (water < 0) {
+            for (int i = 0; i < length; i++) {
+                runs[first + i * stride] = length;
+            }
+            return;
+        }
+        // Start just past a water cell so no run is split by the wrap
+        int runStart = -1;
+        for (int k = 1; k <= length; k++) {
+            final int i = (water + k) % length;
+            final boolean passable = k < length && _registry.isPassable(first + i * stride);
+            if (passable && runStart < 0) {
+                runStart = k;
+            } else if (!passable) {
+                if (runStart >= 0) {
+                    for (int j = runStart; j < k; j++) {
+                        runs[first + ((water + j) % length) * stride] = k - runStart;
+                    }
+                    runStart = -1;
+                }
+                runs[first + i * stride] = 0;
+            }
+        }
+    }
+
+    // --- Minimum cuts ---
+
+    /**
+     * Finds a smallest set of cells separating the cells within walking distance
+     * <code>radius</code> of a hill from those at walking distance <code>2 * radius</code>.
+     *
+     * @param hill   hill cell
+     * @param radius inner radius
+     * @param out    receives the cut cells; not cleared first
+     * @return number of cut cells added to <code>out</code>; 0 if nothing reaches the outer
+     *         distance
+     */
+    public int minimumCut(int hill, int radius, CellList out) {
+        final Registry r = _registry;
+        final int outer = 2 * radius;
+        // Walking distances out to the outer radius
+        if (++_generation == 0) {
+            Arrays.fill(_distanceStamp, 0);
+            _generation = 1;
+        }
+        int head = 0, tail = 0;
+        _distanceStamp[hill] = _generation;
+        _distance[hill] = 0;
+        _queue[tail++] = hill;
+        while (head < tail) {
+            final int cell = _queue[head++];
+            if (_distance[cell] == outer) {
+                continue;
+            }
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (_distanceStamp[neighbor] != _generation && r.isPassable(neighbor)) {
+                    _distanceStamp[neighbor] = _generation;
+                    _distance[neighbor] = _distance[cell] + 1;
+                    _queue[tail++] = neighbor;
+                }
+            }
+        }
+        // Cells of the band between the two distances, numbered for the flow network
+        CellList band = new CellList();
+        for (int i = 0; i < tail; i++) {
+            final int cell = _queue[i];
+            _bandIndex[cell] = -1;
+            if (_distance[cell] >= radius) {
+                _bandIndex[cell] = band.size();
+                band.add(cell);
+            }
+        }
+        boolean reachesOuter = false;
+        for (int i = 0; i < band.size(); i++) {
+            reachesOuter |= _distance[band.get(i)] == outer;
+        }
+        if (!reachesOuter) {
+            return 0;
+        }
+        FlowNetwork network = new FlowNetwork(2 * band.size() + 2);
+        final int source = 2 * band.size(), sink = source + 1;
+        for (int i = 0; i < band.size(); i++) {
+            final int cell = band.get(i);
+            // Entering a cell's 'in' node and leaving by its 'out' node uses up the cell
+            network.addEdge(2 * i, 2 * i + 1, 1);
+            if (_distance[cell] == radius) {
+                network.addEdge(source, 2 * i, FlowNetwork.INFINITE);
+            }
+            if (_distance[cell] == outer) {
+                network.addEdge(2 * i + 1, sink, FlowNetwork.INFINITE);
+            }
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (_distanceStamp[neighbor] == _generation && _bandIndex[neighbor] >= 0) {
+                    network.addEdge(2 * i + 1, 2 * _bandIndex[neighbor], FlowNetwork.INFINITE);
+                }
+            }
+        }
+        final int flow = network.maximumFlow(source, sink);
+        final boolean[] reachable = network.residualReachable(source);
+        int added = 0;
+        for (int i = 0; i < band.size(); i++) {
+            if (reachable[2 * i] && !reachable[2 * i + 1]) {
+                out.add(band.get(i));
+                added++;
+            }
+        }
+        if (added != flow) {
+            throw new IllegalStateException(String.format("Cut of %d cell(s) for a flow of %d", added, flow));
+        }
+        return added;
+    }
+
+    /**
+     * Directed graph with integer capacities, for augmenting path max flow.
+     */
+    private static final class FlowNetwork {
+
+        static final int INFINITE = Integer.MAX_VALUE / 2;
+
+        private final int _nodes;
+        private final int[] _firstEdge;
+        private int[] _head = new int[64];
+        private int[] _capacity = new int[64];
+        private int[] _nextEdge = new int[64];
+        private int _edges = 0;
+
+        FlowNetwork(int nodes) {
+            _nodes = nodes;
+            _firstEdge = new int[nodes];
+            Arrays.fill(_firstEdge, -1);
+        }
+
+        // Adds an edge and its zero-capacity reverse at the next index, so edge e pairs with e ^ 1
+        void addEdge(int from, int to, int capacity) {
+            if (_edges + 2 > _head.length) {
+                _head = Arrays.copyOf(_head, _head.length * 2);
+                _capacity = Arrays.copyOf(_capacity, _capacity.length * 2);
+                _nextEdge = Arrays.copyOf(_nextEdge, _nextEdge.length * 2);
+            }
+            link(from, to, capacity);
+            link(to, from, 0);
+        }
+
+        private void link(int from, int to, int capacity) {
+            _head[_edges] = to;
+            _capacity[_edges] = capacity;
+            _nextEdge[_edges] = _firstEdge[from];
+            _firstEdge[from] = _edges++;
+        }
+
+        // Breadth-first augmenting paths; every path carries one unit through some cell
+        int maximumFlow(int source, int sink) {
+            final int[] via = new int[_nodes];
+            final int[] queue = new int[_nodes];
+            int flow = 0;
+            while (true) {
+                Arrays.fill(via, -1);
+                int head = 0, tail = 0;
+                queue[tail++] = source;
+                via[source] = -2;
+                while (head < tail && via[sink] == -1) {
+                    final int node = queue[head++];
+                    for (int e = _firstEdge[node]; e >= 0; e = _nextEdge[e]) {
+                        if (_capacity[e] > 0 && via[_head[e]] == -1) {
+                            via[_head[e]] = e;
+                            queue[tail++] = _head[e];
+                        }
+                    }
+                }
+                if (via[sink] == -1) {
+                    return flow;
+                }
+                int bottleneck = INFINITE;
+                for (int node = sink; node != source; node = _head[via[node] ^ 1]) {
+                    bottleneck = Math.min(bottleneck, _capacity[via[node]]);
+                }
+                for (int node = sink; node != source; node = _head[via[node] ^ 1]) {
+                    _capacity[via[node]] -= bottleneck;
+                    _capacity[via[node] ^ 1] += bottleneck;
+                }
+                flow += bottleneck;
+            }
+        }
+
+        boolean[] residualReachable(int source) {
+            final boolean[] reached = new boolean[_nodes];
+            final int[] queue = new int[_nodes];
+            int head = 0, tail = 0;
+            reached[source] = true;
+            queue[tail++] = source;
+            while (head < tail) {
+                final int node = queue[head++];
+                for (int e = _firstEdge[node]; e >= 0; e = _nextEdge[e]) {
+                    if (_capacity[e] > 0 && !reached[_head[e]]) {
+                        reached[_head[e]] = true;
+                        queue[tail++] = _head[e];
+                    }
+                }
+            }
+            return reached;
+        }
+    }
+}
@@ -39,21 +39,15 @@ public class Circumference implements Iterable<Tile> {
         }
     }
     
-    public static int getMaximumRadius() {
-        if (_maximumRadius == 0) {
-            _maximumRadius = (int) Math.floor((Math.min(Registry.Instance.getRows(), Registry.Instance.getCols()) - 1) / 2.0);
-        }
-        return _maximumRadius;
-    }
-    
-    private static int _maximumRadius = 0;
+    private final Registry _registry;
     private final Tile _center;
     private final int _radius;
     private final LinkedList<Tile> _tiles = new LinkedList<Tile>();
     
-    public Circumference(Tile center, int radius) {
+    public Circumference(GameContext context, Tile center, int radius) {
+        _registry = context.getRegistry();
         _center = center;
-        _radius = Math.min(radius, getMaximumRadius());
+        _radius = Math.min(radius, context.getMaximumCircumferenceRadius());
 
         // Direction changes will correspond to due east/south/west/north
         final Map<Tile, CircumferenceDirection> directionChanges = new HashMap<Tile, CircumferenceDirection>();
@@ -71,7 +65,7 @@ public class Circumference implements Iterable<Tile> {
         CircumferenceDirection currentDirection = CircumferenceDirection.SouthEast;
         Tile current = start;
         do {
-            if (Registry.Instance.getIlk(current).isPassable()) {
+            if (_registry.getIlk(current).isPassable()) {
                 _tiles.add(current);
             }
             current = getTile(current, currentDirection.getRowDelta(), currentDirection.getColDelta());
@@ -123,16 +117,16 @@ public class Circumference implements Iterable<Tile> {
     private Tile getTile(Tile start, int rowDelta, int colDelta) {
         int row = start.getRow() + rowDelta;
         if (row < 0) {
-            row += Registry.Instance.getRows();
-        } else if (row >= Registry.Instance.getRows()) {
-            row -= Registry.Instance.getRows();
+            row += _registry.getRows();
+        } else if (row >= _registry.getRows()) {
+            row -= _registry.getRows();
         }
         int col = start.getCol() + colDelta;
         if (col < 0) {
-            col += Registry.Instance.getCols();
-        } else if (col >= Registry.Instance.getCols()) {
-            col -= Registry.Instance.getCols();
+            col += _registry.getCols();
+        } else if (col >= _registry.getCols()) {
+            col -= _registry.getCols();
         }
-        return new Tile(row, col);
+        return _registry.tileAt(row, col);
     }
 }
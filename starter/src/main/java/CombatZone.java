@@ -13,7 +13,8 @@ import java.util.Set;
  */
 public class CombatZone {
 
-    private Ant[][] _antMap;
+    private final Registry _registry;
+    private Ant[] _antMap;
     private List<Ant> _myAnts = new ArrayList<Ant>();
     private List<Ant> _allAnts = new ArrayList<Ant>();
     private int[] _indexes;
@@ -31,8 +32,10 @@ public class CombatZone {
             new X.ReferenceAim(Aim.WEST)
     };
 
-    public CombatZone(Iterable<Ant> ants) {
-        _antMap = new Ant[Registry.Instance.getRows()][Registry.Instance.getCols()]; // initialized to null
+    public CombatZone(GameContext context, Iterable<Ant> ants) {
+        _registry = context.getRegistry();
+        final HillDistanceOracle hillDistances = context.getHillDistances();
+        _antMap = new Ant[_registry.getCellCount()]; // initialized to null
         boolean closeToHill = false;
         for (Ant a : ants) {
             if (a.getTeam() == 0) {
@@ -41,9 +44,14 @@ public class CombatZone {
                 // Only put enemies in _allAnts for now
                 if (!closeToHill) {
                     // Slightly different scoring heuristics when we're too close to a hill
-                    for (Tile hill : Registry.Instance.getMyHills()) {
-                        if (Registry.Instance.getDistance(a.getPosition(), hill) <= HILL_PROXIMITY) {
-                            closeToHill = true;
+                    if (hillDistances.hasHills()) {
+                        int distance = hillDistances.walkDistanceToNearestHill(_registry.getCell(a.getPosition()));
+                        closeToHill = distance != HillDistanceOracle.UNREACHABLE && distance <= HILL_PROXIMITY;
+                    } else {
+                        for (Tile hill : _registry.getMyHills()) {
+                            if (_registry.getDistance(a.getPosition(), hill) <= HILL_PROXIMITY) {
+                                closeToHill = true;
+                            }
                         }
                     }
                 }
@@ -63,7 +71,7 @@ public class CombatZone {
         }
         _allAnts.addAll(0, _myAnts);
         for (Ant a : _allAnts) {
-            _antMap[a.getPosition().getRow()][a.getPosition().getCol()] = a;
+            _antMap[_registry.getCell(a.getPosition())] = a;
         }
         _indexes = new int[_allAnts.size()];
         if (closeToHill) {
@@ -152,7 +160,7 @@ public class CombatZone {
             return _score;
         }
 
-        public void move(List<Ant> ants, MovementHandler handler) {
+        public void move(Registry registry, List<Ant> ants, MovementHandler handler) {
             List<Map.Entry<Tile, Tile>> details = new ArrayList<Map.Entry<Tile, Tile>>(ants.size());
             for (int i = 0; i < _move.length; i++) {
                 Tile start = ants.get(i).getPosition();
@@ -162,7 +170,7 @@ public class CombatZone {
                     // Ignore non-moves
                     continue;
                 }
-                Tile end = Registry.Instance.getTile(start, _move[i].Value);
+                Tile end = registry.getTile(start, _move[i].Value);
                 details.add(new AbstractMap.SimpleEntry<Tile, Tile>(start, end));
             }
             while (details.size() > 0) {
@@ -266,7 +274,7 @@ public class CombatZone {
             }
         }
         if (bestMove != null) {
-            bestMove.move(_myAnts, handler);
+            bestMove.move(_registry, _myAnts, handler);
             _log.debug("COMBAT: executed score=%f move", bestMove.getScore());
         } else {
             _log.info("COMBAT: could not compute a best combat move");
@@ -289,8 +297,8 @@ public class CombatZone {
                     continue;
                 }
                 moveCount++;
-                Tile next = Registry.Instance.getTile(ant.getPosition(), move[i].Value);
-                if (Registry.Instance.getIlk(next) == Ilk.WATER) {
+                Tile next = _registry.getTile(ant.getPosition(), move[i].Value);
+                if (_registry.getIlk(next) == Ilk.WATER) {
                     Set<Aim> invalidMove = invalidMoves.get(i);
                     if (invalidMove == null) {
                         invalidMove = new HashSet<Aim>();
@@ -301,8 +309,8 @@ public class CombatZone {
                                                                      ant.getPosition(), move[i].Value));
                 }
                 // Swap according to move
-                _antMap[next.getRow()][next.getCol()] = ant;
-                _antMap[ant.getPosition().getRow()][ant.getPosition().getCol()] = null;
+                _antMap[_registry.getCell(next)] = ant;
+                _antMap[_registry.getCell(ant.getPosition())] = null;
                 _movePositionBuffer.add(next);
                 ant.setNextCombatPosition(next);
             }
@@ -350,16 +358,17 @@ public class CombatZone {
                 if (!a.getPosition().equals(a.getNextCombatPosition())) {
                     // Null out their 'next' position
                     Tile next = a.getNextCombatPosition();
-                    _antMap[next.getRow()][next.getCol()] = null;
+                    _antMap[_registry.getCell(next)] = null;
                     // Place in original homes
-                    _antMap[a.getPosition().getRow()][a.getPosition().getCol()] = a;
+                    _antMap[_registry.getCell(a.getPosition())] = a;
                 }
             }
         }
     }
 
-    // Reusable container to support "nearby" calculation
+    // Reusable containers to support "nearby" calculation
     private ArrayList<Ant> _nearbyBuffer;
+    private int[] _stencilBuffer;
 
     private void getNearbyAnts(Tile antMapLoc, int teamToExclude) {
         if (_nearbyBuffer == null) {
@@ -367,9 +376,13 @@ public class CombatZone {
         } else {
             _nearbyBuffer.clear();
         }
-        for (Tile delta : Registry.Instance.getOffsets(Registry.Instance.getAttackRadius2())) {
-            Tile inRadius = Registry.Instance.getTile(antMapLoc, delta);
-            Ant a = _antMap[inRadius.getRow()][inRadius.getCol()];
+        final Stencil attack = _registry.getAttackStencil();
+        if (_stencilBuffer == null) {
+            _stencilBuffer = new int[attack.getSize()];
+        }
+        final int covered = attack.apply(_registry.getCell(antMapLoc), _stencilBuffer);
+        for (int i = 0; i < covered; i++) {
+            Ant a = _antMap[_stencilBuffer[i]];
             if (a != null && a.getTeam() != teamToExclude) {
                 _nearbyBuffer.add(a);
             }
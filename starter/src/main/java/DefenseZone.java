@@ -1,56 +1,38 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Author: evan.pollan
  */
 public class DefenseZone {
 
-    private static class Hotspot implements MedianThreshold.Measurable<Hotspot> {
-
-        public int Hits = 0;
-        private Tile Tile = null;
-
-        public Hotspot(Tile t) {
-            Tile = t;
-        }
-
-        @Override
-        public int compareTo(Hotspot other) {
-            int comparison = Comparisons.compare(Hits, other.Hits);
-            if (comparison == 0) {
-                comparison = this.Tile.compareTo(other.Tile);
-            }
-            return comparison;
-        }
-
-        @Override
-        public int getMetric() {
-            return Hits;
-        }
-    }
-
+    private final GameContext _context;
+    private final Registry _registry;
     private final int _alarmRadius;
     private List<Tile> _strongpoints = null;
+    // Water count the strongpoints were found with
+    private int _strongpointsWaterCount = -1;
     private final Tile _hill;
     private final List<Tile> _lookouts;
     private final List<Tile> _invisibleLookouts;
     private static final LogFacade _log = LogFacade.get(DefenseZone.class);
 
-    public DefenseZone(Tile hill, int alarmRadius) {
+    public DefenseZone(GameContext context, Tile hill, int alarmRadius) {
+        _context = context;
+        _registry = context.getRegistry();
         _hill = hill;
         _alarmRadius = alarmRadius;
         _lookouts = new ArrayList<Tile>(4);
         for (Aim aim : Aim.values()) {
             Tile candidate = null;
-            for (int d = (int)Math.sqrt(Registry.Instance.getViewRadius2()); d > 0 ; d--) {
-                candidate = Registry.Instance.getTile(_hill, aim, d);
-                if (Registry.Instance.getIlk(candidate) != Ilk.WATER) {
+            for (int d = (int)Math.sqrt(_registry.getViewRadius2()); d > 0 ; d--) {
+                candidate = _registry.getTile(_hill, aim, d);
+                if (_registry.getIlk(candidate) != Ilk.WATER) {
                     _lookouts.add(candidate);
                     break;
                 }
@@ -62,7 +44,7 @@ public class DefenseZone {
     public final List<Tile> getInvisibleLookouts() {
         _invisibleLookouts.clear();
         for (Tile lookout : _lookouts) {
-            if (!Registry.Instance.isVisible(lookout)) {
+            if (!_registry.isVisible(lookout)) {
                 _invisibleLookouts.add(lookout);
                 _log.debug("Lookout for hill [%s] is out of visible range -- targeting [%s]",
                            _hill, lookout);
@@ -72,66 +54,73 @@ public class DefenseZone {
     }
 
     public final List<Tile> getStrongpoints() {
-        if (_strongpoints == null) {
+        if (_strongpoints == null || _strongpointsWaterCount != _registry.getWaterCount()) {
             calculateStrongpoints();
         }
         return _strongpoints;
     }
 
     private void calculateStrongpoints() {
-        // Find the hotspots where an optimally-routed invader would likely cross our
-        // alarm radius.  We'll egress ants towards these hotspots to create "strongpoints"
-        Map<Tile, Hotspot> alarmRadiusTraffic = new HashMap<Tile, Hotspot>();
-        Circumference c = new Circumference(_hill, _alarmRadius);
-        for (Tile t : c) {
-            alarmRadiusTraffic.put(t, new Hotspot(t));
-        }
-        for (Tile t : new Circumference(_hill, _alarmRadius * 2)) {
-            try {
-                AStarRoute route = new AStarRoute(t, _hill);
-                boolean passedAlarmRadius = false;
-                for (Tile routeTile : route.routeTiles()) {
-                    if (alarmRadiusTraffic.containsKey(routeTile)) {
-                        alarmRadiusTraffic.get(routeTile).Hits++;
-                        passedAlarmRadius = true;
-                    } else if (passedAlarmRadius) {
-                        // We've already passed through the alarm radius, move to next route
-                        break;
-                    }
-                }
-            } catch (NoRouteException ex) {
+        // Every route in from twice the alarm radius crosses the smallest set of cells cutting
+        // it off from the alarm radius.  We'll egress ants towards these cells to create
+        // "strongpoints"
+        final int hill = _registry.getCell(_hill);
+        CellList cut = new CellList();
+        _context.getChokepoints().minimumCut(hill, _alarmRadius, cut);
+        final List<Tile> previous = (_strongpoints != null) ? _strongpoints : Collections.<Tile>emptyList();
+        _strongpoints = new ArrayList<Tile>(cut.size());
+        for (int i = 0; i < cut.size(); i++) {
+            Tile t = _registry.tileAt(cut.get(i));
+            _log.debug("Defensive strongpoint for hill [%s]: [%s]", _hill, t);
+            _strongpoints.add(t);
+            if (!previous.contains(t)) {
+                // Ants leaving the hill mostly start out on this route, so spare time spent on it
+                // answers their breadcrumb routes from the cache
+                _context.getPathTasks().submit(hill, cut.get(i));
             }
         }
-        List<Hotspot> spots = new ArrayList<Hotspot>(alarmRadiusTraffic.values());
-        // Gather hotspots + some neighbors
-        Set<Tile> defenses = new HashSet<Tile>();
-        for (Hotspot h : MedianThreshold.aboveMedianThreshold(spots, 1.0f)) {
-            for (Tile t : c.getRegion(h.Tile, 2)) {
-                if (!defenses.contains(t)) {
-                    LogFacade.get(DefenseZone.class)
-                             .info("Defensive strongpoint for hill [%s]: [%s]", _hill, t);
-                    defenses.add(t);
-                }
-            }
+        // Order them clockwise from due north, as a circumference would be, so we can sample later
+        final Map<Tile, Double> bearings = new HashMap<Tile, Double>();
+        for (Tile t : _strongpoints) {
+            bearings.put(t, bearing(t));
         }
-        // Build strongpoints list according to proximity so we can sample later
-        _strongpoints = new ArrayList<Tile>(defenses.size());
-        for (Tile t : c) {
-            if (defenses.contains(t)) {
-                _strongpoints.add(t);
+        Collections.sort(_strongpoints, new Comparator<Tile>() {
+            @Override
+            public int compare(Tile t1, Tile t2) {
+                return bearings.get(t1).compareTo(bearings.get(t2));
             }
-        }
+        });
+        _strongpointsWaterCount = _registry.getWaterCount();
+    }
+
+    // Clockwise angle of a tile about the hill, from due north
+    private double bearing(Tile t) {
+        final int rows = _registry.getRows(), cols = _registry.getCols();
+        int rowDelta = (t.getRow() - _hill.getRow() + rows) % rows;
+        int colDelta = (t.getCol() - _hill.getCol() + cols) % cols;
+        // Map is a torus -- take the shorter way round
+        rowDelta = (rowDelta > rows / 2) ? rowDelta - rows : rowDelta;
+        colDelta = (colDelta > cols / 2) ? colDelta - cols : colDelta;
+        final double angle = Math.atan2(colDelta, -rowDelta);
+        return (angle < 0) ? angle + 2 * Math.PI : angle;
     }
 
     private final List<Tile> _invaders = new LinkedList<Tile>();
+    private final CellList _invaderCells = new CellList();
 
     public final List<Tile> getInvaders() {
         _invaders.clear();
-        for (Tile delta : Registry.Instance.getOffsets(_alarmRadius * 4)) {
-            Tile possibleAnt = Registry.Instance.getTile(_hill, delta);
-            if (Registry.Instance.getIlk(possibleAnt) == Ilk.ENEMY_ANT) {
-                _invaders.add(possibleAnt);
+        _invaderCells.clear();
+        final Registry r = _registry;
+        r.queryWithin(_hill, _alarmRadius * 4, AntIndex.ALL_ENEMIES, _invaderCells);
+        final HillDistanceOracle hillDistances = _context.getHillDistances();
+        final boolean walking = hillDistances.tracks(_hill);
+        for (int i = 0; i < _invaderCells.size(); i++) {
+            // Enemies walled off from the hill aren't invaders
+            if (walking && hillDistances.walkDistance(_hill, _invaderCells.get(i)) == HillDistanceOracle.UNREACHABLE) {
+                continue;
             }
+            _invaders.add(r.tileAt(_invaderCells.get(i)));
         }
         return _invaders;
     }
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * Many-to-many walking distances between a set of target cells and a set of source cells.
+ *
+ * One reverse breadth-first search runs from each target, stopping as soon as every source has
+ * been reached or a distance limit is passed, so the whole table costs about as much as a handful
+ * of A* searches no matter how many sources there are.  Along with each distance the table keeps
+ * the source's first move towards the target.
+ */
+public class DistanceTable {
+
+    /**
+     * Distance reported for sources that can't reach a target within the limit.
+     */
+    public static final int UNREACHABLE = -1;
+
+    private static final byte NO_DIRECTION = -1;
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private final Registry _registry;
+    private final int[] _stamp;
+    private final int[] _search;
+    private final int[] _queue;
+    // Index of each source cell in the current table, valid for cells stamped with
+    // _sourceGeneration
+    private final int[] _sourceStamp;
+    private final int[] _sourceIndex;
+    private int _sourceGeneration = 0;
+    private int _generation = 0;
+    private int _targetCount = 0;
+    private int _sourceCount = 0;
+    // Row-major by target
+    private int[] _distance = new int[0];
+    private byte[] _direction = new byte[0];
+
+    public DistanceTable(Registry registry) {
+        _registry = registry;
+        final int cells = registry.getCellCount();
+        _stamp = new int[cells];
+        _search = new int[cells];
+        _queue = new int[cells];
+        _sourceStamp = new int[cells];
+        _sourceIndex = new int[cells];
+    }
+
+    /**
+     * Fills the table.
+     *
+     * @param targets     target cells
+     * @param targetCount number of target cells at the front of <code>targets</code>
+     * @param sources     source cells
+     * @param sourceCount number of source cells at the front of <code>sources</code>
+     * @param maxDistance distance beyond which sources are treated as unreachable
+     */
+    public void compute(int[] targets, int targetCount, int[] sources, int sourceCount, int maxDistance) {
+        _targetCount = targetCount;
+        _sourceCount = sourceCount;
+        final int size = targetCount * sourceCount;
+        if (_distance.length < size) {
+            _distance = new int[size];
+            _direction = new byte[size];
+        }
+        Arrays.fill(_distance, 0, size, UNREACHABLE);
+        Arrays.fill(_direction, 0, size, NO_DIRECTION);
+        if (++_sourceGeneration == 0) {
+            Arrays.fill(_sourceStamp, 0);
+            _sourceGeneration = 1;
+        }
+        for (int i = 0; i < sourceCount; i++) {
+            _sourceStamp[sources[i]] = _sourceGeneration;
+            _sourceIndex[sources[i]] = i;
+        }
+        for (int t = 0; t < targetCount; t++) {
+            if (++_generation == 0) {
+                Arrays.fill(_stamp, 0);
+                _generation = 1;
+            }
+            search(targets[t], t * sourceCount, maxDistance);
+        }
+    }
+
+    private void search(int target, int row, int maxDistance) {
+        final Registry r = _registry;
+        int remaining = _sourceCount;
+        int head = 0, tail = 0;
+        _stamp[target] = _generation;
+        _search[target] = 0;
+        _queue[tail++] = target;
+        while (head < tail && remaining > 0) {
+            final int cell = _queue[head++];
+            final int distance = _search[cell];
+            if (_sourceStamp[cell] == _sourceGeneration) {
+                _distance[row + _sourceIndex[cell]] = distance;
+                remaining--;
+            }
+            if (distance == maxDistance) {
+                continue;
+            }
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (_stamp[neighbor] != _generation && r.isPassable(neighbor)) {
+                    _stamp[neighbor] = _generation;
+                    _search[neighbor] = distance + 1;
+                    // The search arrived from 'cell', so stepping back the way it came leads there
+                    if (_sourceStamp[neighbor] == _sourceGeneration) {
+                        _direction[row + _sourceIndex[neighbor]] = (byte) ((aim.ordinal() + 2) & 3);
+                    }
+                    _queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param target target index
+     * @param source source index
+     * @return moves from the source to the target, or {@link #UNREACHABLE}
+     */
+    public int getDistance(int target, int source) {
+        return _distance[target * _sourceCount + source];
+    }
+
+    /**
+     * @param target target index
+     * @param source source index
+     * @return first move from the source towards the target, or null if the source is the target
+     *         or can't reach it
+     */
+    public Aim getDirection(int target, int source) {
+        final byte direction = _direction[target * _sourceCount + source];
+        return (direction == NO_DIRECTION) ? null : AIMS[direction];
+    }
+
+    public int getTargetCount() {
+        return _targetCount;
+    }
+
+    public int getSourceCount() {
+        return _sourceCount;
+    }
+}
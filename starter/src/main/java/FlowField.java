@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/**
+ * Distance to the nearest of a set of target cells, and the first move towards it, for every
+ * cell on the map.  Built by a single multi-source breadth-first search over passable cells, so
+ * any ant's next step towards its closest target is an array lookup.
+ *
+ * The field is only rebuilt when its targets or the known terrain change.
+ */
+public class FlowField {
+
+    /**
+     * Distance reported for cells that can't reach any target.
+     */
+    public static final int UNREACHABLE = -1;
+
+    private static final byte NO_DIRECTION = -1;
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private final Registry _registry;
+    private final int[] _distance;
+    // Aim ordinal of the first move towards the nearest target, or NO_DIRECTION
+    private final byte[] _direction;
+    private final int[] _queue;
+    // Sorted target cells of the current field
+    private int[] _targets = new int[0];
+    private int _waterCount = -1;
+
+    public FlowField(Registry registry) {
+        _registry = registry;
+        _distance = new int[registry.getCellCount()];
+        _direction = new byte[registry.getCellCount()];
+        _queue = new int[registry.getCellCount()];
+        Arrays.fill(_distance, UNREACHABLE);
+        Arrays.fill(_direction, NO_DIRECTION);
+    }
+
+    /**
+     * Rebuilds the field if the target set or the terrain changed since it was last built.
+     *
+     * @param targets target cells; sorted in place
+     * @param count   number of target cells at the front of <code>targets</code>
+     * @return true if the field was rebuilt
+     */
+    public boolean update(int[] targets, int count) {
+        Arrays.sort(targets, 0, count);
+        if (_waterCount == _registry.getWaterCount() && sameTargets(targets, count)) {
+            return false;
+        }
+        _targets = Arrays.copyOf(targets, count);
+        _waterCount = _registry.getWaterCount();
+        build();
+        return true;
+    }
+
+    private boolean sameTargets(int[] targets, int count) {
+        if (count != _targets.length) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (targets[i] != _targets[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void build() {
+        final Registry r = _registry;
+        Arrays.fill(_distance, UNREACHABLE);
+        Arrays.fill(_direction, NO_DIRECTION);
+        int head = 0, tail = 0;
+        for (int cell : _targets) {
+            if (_distance[cell] == UNREACHABLE) {
+                _distance[cell] = 0;
+                _queue[tail++] = cell;
+            }
+        }
+        while (head < tail) {
+            final int cell = _queue[head++];
+            final int distance = _distance[cell] + 1;
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (_distance[neighbor] == UNREACHABLE && r.isPassable(neighbor)) {
+                    _distance[neighbor] = distance;
+                    // Stepping back the way the search came leads towards the target
+                    _direction[neighbor] = (byte) ((aim.ordinal() + 2) & 3);
+                    _queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cell cell id
+     * @return moves from <code>cell</code> to the nearest target, or {@link #UNREACHABLE}
+     */
+    public int getDistance(int cell) {
+        return _distance[cell];
+    }
+
+    /**
+     * @param cell cell id
+     * @return first move from <code>cell</code> towards the nearest target, or null if the cell
+     *         is a target or can't reach one
+     */
+    public Aim getDirection(int cell) {
+        final byte direction = _direction[cell];
+        return (direction == NO_DIRECTION) ? null : AIMS[direction];
+    }
+
+    /**
+     * @return number of targets the field was built from
+     */
+    public int getTargetCount() {
+        return _targets.length;
+    }
+}
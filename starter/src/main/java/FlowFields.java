@@ -0,0 +1,104 @@
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One {@link FlowField} per class of target, refreshed each turn alongside the
+ * {@link TargetInfluenceMap}.  Where diffused influence only reaches a limited distance from its
+ * seeds, a flow field gives every connected cell a direction to the nearest target of its class.
+ */
+public class FlowFields {
+
+    private static final LogFacade _log = LogFacade.get(FlowFields.class);
+
+    private final Registry _registry;
+    private final Map<TargetingPolicy.Type, FlowField> _fields =
+            new EnumMap<TargetingPolicy.Type, FlowField>(TargetingPolicy.Type.class);
+    private int[] _targetBuffer = new int[64];
+
+    public FlowFields(GameContext context) {
+        _registry = context.getRegistry();
+    }
+
+    /**
+     * Refreshes the fields for all supported target classes.  Fields whose targets and terrain
+     * haven't changed are left as they are.
+     *
+     * @param unseenTiles sample of tiles out of view
+     * @param defenses    my hill defenses, whose invisible lookouts are targets
+     */
+    public void update(Iterable<Tile> unseenTiles, Iterable<DefenseZone> defenses) {
+        long start = System.currentTimeMillis();
+        int rebuilt = 0;
+        rebuilt += update(TargetingPolicy.Type.Food, _registry.getFoodTiles()) ? 1 : 0;
+        rebuilt += update(TargetingPolicy.Type.UnseenTile, unseenTiles) ? 1 : 0;
+        int count = 0;
+        for (DefenseZone defense : defenses) {
+            for (Tile lookout : defense.getInvisibleLookouts()) {
+                count = addTarget(count, lookout);
+            }
+        }
+        rebuilt += getOrCreate(TargetingPolicy.Type.DefensiveStation).update(_targetBuffer, count) ? 1 : 0;
+        _log.debug("Rebuilt %d flow field(s) in %d ms", rebuilt, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Refreshes the field for one target class.
+     *
+     * @param type    target class
+     * @param targets current targets of that class
+     * @return true if the field was rebuilt
+     */
+    public boolean update(TargetingPolicy.Type type, Iterable<Tile> targets) {
+        int count = 0;
+        for (Tile t : targets) {
+            count = addTarget(count, t);
+        }
+        return getOrCreate(type).update(_targetBuffer, count);
+    }
+
+    private int addTarget(int count, Tile t) {
+        if (count == _targetBuffer.length) {
+            _targetBuffer = Arrays.copyOf(_targetBuffer, count * 2);
+        }
+        _targetBuffer[count] = _registry.getCell(t);
+        return count + 1;
+    }
+
+    private FlowField getOrCreate(TargetingPolicy.Type type) {
+        FlowField field = _fields.get(type);
+        if (field == null) {
+            field = new FlowField(_registry);
+            _fields.put(type, field);
+        }
+        return field;
+    }
+
+    /**
+     * @param type target class
+     * @return field for the target class, or null if it has never been updated
+     */
+    public FlowField get(TargetingPolicy.Type type) {
+        return _fields.get(type);
+    }
+
+    /**
+     * @param type target class
+     * @param from location on the game map
+     * @return moves to the nearest target of the class, or {@link FlowField#UNREACHABLE}
+     */
+    public int getDistance(TargetingPolicy.Type type, Tile from) {
+        FlowField field = _fields.get(type);
+        return (field == null) ? FlowField.UNREACHABLE : field.getDistance(_registry.getCell(from));
+    }
+
+    /**
+     * @param type target class
+     * @param from location on the game map
+     * @return first move towards the nearest target of the class, or null if there is none
+     */
+    public Aim getDirection(TargetingPolicy.Type type, Tile from) {
+        FlowField field = _fields.get(type);
+        return (field == null) ? null : field.getDirection(_registry.getCell(from));
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Owns all of the state belonging to a single game:
+ * <ul>
+ * <li>the {@link Registry}, the {@link TargetingHistory}, the {@link TargetingPolicy} instances
+ * and derived map constants;</li>
+ * <li>routing:  the {@link Landmarks} behind the {@link PathEngine}'s heuristic, the
+ * {@link RouteCache} in front of it and the {@link PathTasks} queue that fills it in spare
+ * time;</li>
+ * <li>map analysis:  the {@link HillDistanceOracle}, the {@link HierarchicalPathfinder} and the
+ * {@link Chokepoints}, each kept up to date by the registry as water is discovered;</li>
+ * <li>the pool of worker threads that work is handed off to, either the game's own or one
+ * shared by the host with its other games.</li>
+ * </ul>
+ *
+ * Nothing game-specific is held in static fields, so one JVM can host any number of games as
+ * long as each runs on its own context.  A context's state is only touched from its game's loop
+ * thread, one turn at a time.  Work handed to the worker pool only reads the map and is waited
+ * for before the turn goes on, so the workers never see state change under them.  The pool is
+ * the only part of a context to outlive its game:  {@link #close()} it once the game is over.
+ */
+public class GameContext {
+
+    private final PrintStream _output;
+    private final Map<TargetingPolicy.Type, TargetingPolicy> _policies =
+            new HashMap<TargetingPolicy.Type, TargetingPolicy>();
+    private Registry _registry;
+    private TargetingHistory _targetingHistory;
+    private Landmarks _landmarks;
+    private PathEngine _pathEngine;
+    private RouteCache _routeCache;
+    private PathTasks _pathTasks;
+    private HillDistanceOracle _hillDistances;
+    private HierarchicalPathfinder _hierarchicalPathfinder;
+    private Chokepoints _chokepoints;
+    private int _maximumCircumferenceRadius;
+    private final int _workerCount;
+    // Pool handed in by the host and shared with its other games, or null
+    private final ExecutorService _sharedWorkers;
+    // This game's own pool when none is shared, created on first use so games that never hand
+    // work off don't start threads
+    private ExecutorService _workers;
+
+    /**
+     * Creates a context that writes orders to standard output.
+     */
+    public GameContext() {
+        this(System.out);
+    }
+
+    /**
+     * Creates a context for a game that has the machine to itself:  work is handed off to a pool
+     * of its own with a thread per available processor.
+     *
+     * @param output stream that receives this game's orders
+     */
+    public GameContext(PrintStream output) {
+        this(output, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a context for one of many games hosted in a single process, which share one
+     * bounded pool rather than each starting a thread per processor.
+     *
+     * @param output      stream that receives this game's orders
+     * @param workers     pool shared with the host's other games, which {@link #close()} leaves
+     *                    running; or null for a pool of this game's own
+     * @param workerCount number of ways work is split for the pool, e.g. its thread count; 1
+     *                    keeps all of this game's work on its own game loop
+     */
+    public GameContext(PrintStream output, ExecutorService workers, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workerCount);
+        }
+        _output = output;
+        _sharedWorkers = workers;
+        _workerCount = workerCount;
+        _policies.put(TargetingPolicy.Type.Unmanaged,
+                      new TargetingPolicy(TargetingPolicy.Type.Unmanaged, Integer.MAX_VALUE, null, null, null));
+    }
+
+    /**
+     * Creates the game state for a new game.  Called once the game's setup parameters are known.
+     *
+     * @param loadTime      timeout for initializing and setting up the bot on turn 0
+     * @param turnTime      timeout for a single game turn, starting with turn 1
+     * @param rows          game map height
+     * @param cols          game map width
+     * @param turns         maximum number of turns the game will be played
+     * @param viewRadius2   squared view radius of each ant
+     * @param attackRadius2 squared attack radius of each ant
+     * @param spawnRadius2  squared spawn radius of each ant
+     */
+    public void initialize(int loadTime, int turnTime, int rows, int cols, int turns, int viewRadius2,
+                           int attackRadius2, int spawnRadius2) {
+        _registry = new Registry(_output, loadTime, turnTime, rows, cols, turns, viewRadius2,
+                                 attackRadius2, spawnRadius2);
+        _targetingHistory = new TargetingHistory(this);
+        _landmarks = new Landmarks(_registry, Landmarks.DEFAULT_COUNT);
+        _pathEngine = new PathEngine(_registry, _landmarks);
+        _routeCache = new RouteCache(_registry, _pathEngine, RouteCache.DEFAULT_CAPACITY);
+        _registry.addTerrainListener(_routeCache);
+        _pathTasks = new PathTasks(_registry, _routeCache);
+        _registry.addTerrainListener(_pathTasks);
+        _hillDistances = new HillDistanceOracle(_registry);
+        _registry.addTerrainListener(_hillDistances);
+        _hierarchicalPathfinder = new HierarchicalPathfinder(_registry, HierarchicalPathfinder.DEFAULT_CHUNK_SIZE);
+        _registry.addTerrainListener(_hierarchicalPathfinder);
+        _chokepoints = new Chokepoints(_registry);
+        _registry.addTerrainListener(_chokepoints);
+        _maximumCircumferenceRadius = (int) Math.floor((Math.min(rows, cols) - 1) / 2.0);
+    }
+
+    public PrintStream getOutput() {
+        return _output;
+    }
+
+    public Registry getRegistry() {
+        return _registry;
+    }
+
+    public TargetingHistory getTargetingHistory() {
+        return _targetingHistory;
+    }
+
+    /**
+     * @return path engine shared by this game's {@link AStarRoute}s; only for use on the game
+     *         loop thread
+     */
+    public PathEngine getPathEngine() {
+        return _pathEngine;
+    }
+
+    /**
+     * @return cache of this game's routes, consulted by every {@link AStarRoute}
+     */
+    public RouteCache getRouteCache() {
+        return _routeCache;
+    }
+
+    /**
+     * @return queue of searches worked on across turns, whose routes end up in the route cache
+     */
+    public PathTasks getPathTasks() {
+        return _pathTasks;
+    }
+
+    /**
+     * @return walking distances to my hills, brought up to date once per turn
+     */
+    public HillDistanceOracle getHillDistances() {
+        return _hillDistances;
+    }
+
+    /**
+     * @return chunked pathfinder for routing ants to far-off targets; only for use on the game
+     *         loop thread
+     */
+    public HierarchicalPathfinder getHierarchicalPathfinder() {
+        return _hierarchicalPathfinder;
+    }
+
+    /**
+     * @return articulation points, corridor widths and minimum cuts of the passable grid
+     */
+    public Chokepoints getChokepoints() {
+        return _chokepoints;
+    }
+
+    /**
+     * @return landmark tables backing the path engine's heuristic
+     */
+    public Landmarks getLandmarks() {
+        return _landmarks;
+    }
+
+    /**
+     * @return largest radius of a {@link Circumference} that doesn't overlap itself on this map
+     */
+    public int getMaximumCircumferenceRadius() {
+        return _maximumCircumferenceRadius;
+    }
+
+    /**
+     * @return number of pieces work handed to the worker pool should be split into
+     */
+    public int getWorkerCount() {
+        return _workerCount;
+    }
+
+    /**
+     * Returns the pool shared by the host, or else this game's own pool of
+     * {@link #getWorkerCount()} threads, starting it if need be.  The threads of an own pool are
+     * daemons, so an unfinished pool never holds up the JVM's exit.
+     *
+     * @return pool to hand work off to
+     */
+    public synchronized ExecutorService getWorkers() {
+        if (_sharedWorkers != null) {
+            return _sharedWorkers;
+        }
+        if (_workers == null) {
+            _workers = Executors.newFixedThreadPool(_workerCount, new ThreadFactory() {
+                private int _created = 0;
+
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "worker-" + (++_created));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return _workers;
+    }
+
+    /**
+     * Stops this game's own worker threads, interrupting any work still running on them; a pool
+     * shared by the host is left to the host.  Safe to call more than once; an own pool is
+     * started again if it's asked for afterwards.
+     */
+    public synchronized void close() {
+        if (_workers != null) {
+            _workers.shutdownNow();
+            _workers = null;
+        }
+    }
+
+    public void addPolicy(TargetingPolicy.Type type,
+                          int perTargetAssignmentLimit,
+                          Integer perAntRouteLimit,
+                          Integer antLimit,
+                          Integer perTargetAssignmentFloor) {
+        _policies.put(type, new TargetingPolicy(type, perTargetAssignmentLimit,
+                                                perAntRouteLimit, antLimit, perTargetAssignmentFloor));
+    }
+
+    public TargetingPolicy getPolicy(TargetingPolicy.Type type) {
+        return _policies.get(type);
+    }
+
+    public void clearAssignments() {
+        for (TargetingPolicy p : _policies.values()) {
+            p.clearAssignments();
+        }
+    }
+}
@@ -0,0 +1,474 @@
+import java.util.Arrays;
+
+/**
+ * Two-level ("HPA*") pathfinding towards a set of goal cells.
+ *
+ * The map is cut into square chunks.  Wherever a run of passable cells crosses the border
+ * between two chunks there's an entrance, represented by one transition (two for wide runs)
+ * joining a node on either side; the distance between every pair of nodes in a chunk is found by
+ * a breadth-first search confined to that chunk.  Nodes, transitions and those distances make up
+ * the abstract graph.
+ *
+ * Setting the goals runs one Dijkstra search backwards over the abstract graph, giving every
+ * node its distance to the nearest goal.  A query then only searches the querying cell's own
+ * chunk, picks the best node (or goal) it can reach there and refines just the first step
+ * towards it, so routing every idle ant to a far-off target costs one chunk-sized search each.
+ * Routes are confined to entrances, so distances are close to, but never below, the true ones.
+ *
+ * Newly discovered water marks its chunk dirty; before the next search the dirty chunks' borders
+ * are re-scanned and the abstract graph is rebuilt for them and their neighbours only.
+ */
+public class HierarchicalPathfinder implements Registry.TerrainListener {
+
+    /**
+     * Distance reported for cells that can't reach any goal.
+     */
+    public static final int UNREACHABLE = -1;
+
+    public static final int DEFAULT_CHUNK_SIZE = 10;
+
+    // Entrances at least this wide get a transition at each end rather than one in the middle
+    private static final int WIDE_ENTRANCE = 6;
+
+    private static final byte OPEN = 1;
+    private static final byte CLOSED = 2;
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private static final LogFacade _log = LogFacade.get(HierarchicalPathfinder.class);
+
+    private final Registry _registry;
+    private final int _chunkSize;
+    private final int _chunkRows;
+    private final int _chunkCols;
+    private final int[] _chunkOf;
+
+    // Transitions across each chunk's east and south borders, as (inside, outside) cell pairs
+    private final int[][] _east;
+    private final int[][] _south;
+    // Node cells of each chunk, and the row-major matrix of in-chunk distances between them
+    private final int[][] _nodes;
+    private final int[][] _intra;
+    // Index of each node cell in its chunk's node list, or -1
+    private final int[] _nodeIndex;
+    private final boolean[] _dirty;
+    private boolean _anyDirty = true;
+    private int _version = 0;
+    private int _chunkRebuilds = 0;
+
+    // Backward search from the goals, valid for cells stamped with _generation
+    private int[] _goals = new int[0];
+    private int _searchVersion = -1;
+    private final int[] _stamp;
+    private final byte[] _state;
+    private final int[] _distance;
+    // Next node towards the nearest goal, or -1 where the goal lies in the node's own chunk
+    private final int[] _next;
+    private final CellHeap _open;
+    private int _generation = 0;
+
+    // Breadth-first search within one chunk, valid for cells stamped with _localGeneration
+    private final int[] _localStamp;
+    private final int[] _local;
+    // Aim ordinal of the first move from the search's source towards each cell
+    private final byte[] _localFirst;
+    private final int[] _queue;
+    private int _localGeneration = 0;
+
+    private Aim _direction;
+
+    /**
+     * @param registry  game state
+     * @param chunkSize width and height of a chunk
+     */
+    public HierarchicalPathfinder(Registry registry, int chunkSize) {
+        _registry = registry;
+        _chunkSize = chunkSize;
+        _chunkRows = (registry.getRows() + chunkSize - 1) / chunkSize;
+        _chunkCols = (registry.getCols() + chunkSize - 1) / chunkSize;
+        final int chunks = _chunkRows * _chunkCols;
+        final int cells = registry.getCellCount();
+        _chunkOf = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            final int row = cell / registry.getCols(), col = cell % registry.getCols();
+            _chunkOf[cell] = (row / chunkSize) * _chunkCols + col / chunkSize;
+        }
+        _east = new int[chunks][];
+        _south = new int[chunks][];
+        _nodes = new int[chunks][0];
+        _intra = new int[chunks][];
+        _nodeIndex = new int[cells];
+        Arrays.fill(_nodeIndex, -1);
+        _dirty = new boolean[chunks];
+        Arrays.fill(_dirty, true);
+        _stamp = new int[cells];
+        _state = new byte[cells];
+        _distance = new int[cells];
+        _next = new int[cells];
+        _open = new CellHeap(cells);
+        _localStamp = new int[cells];
+        _local = new int[cells];
+        _localFirst = new byte[cells];
+        _queue = new int[chunkSize * chunkSize];
+    }
+
+    /**
+     * Marks the chunk holding the new water for rebuilding.
+     *
+     * @param cell newly discovered water cell
+     */
+    @Override
+    public void waterDiscovered(int cell) {
+        _dirty[_chunkOf[cell]] = true;
+        _anyDirty = true;
+    }
+
+    /**
+     * Sets the goal cells.  The backward search is rerun if the goals changed or the abstract
+     * graph was rebuilt since it last ran.
+     *
+     * @param goals goal cells; sorted in place
+     * @param count number of goal cells at the front of <code>goals</code>
+     * @return true if the search was rerun
+     */
+    public boolean update(int[] goals, int count) {
+        Arrays.sort(goals, 0, count);
+        rebuild();
+        if (_searchVersion == _version && Arrays.equals(_goals, Arrays.copyOf(goals, count))) {
+            return false;
+        }
+        _goals = Arrays.copyOf(goals, count);
+        search();
+        return true;
+    }
+
+    /**
+     * Finds the distance from a cell to the nearest goal, and the first move towards it, which
+     * is then available from {@link #getDirection}.
+     *
+     * @param from cell id
+     * @return moves to the nearest goal along the abstract graph, or {@link #UNREACHABLE}
+     */
+    public int route(int from) {
+        rebuild();
+        if (_searchVersion != _version) {
+            search();
+        }
+        _direction = null;
+        final int chunk = _chunkOf[from];
+        searchChunk(from, chunk);
+        int best = Integer.MAX_VALUE;
+        int target = -1;
+        // Goals in the same chunk come first, so ties go to the direct route
+        for (int goal : _goals) {
+            if (_chunkOf[goal] == chunk && reached(goal) && _local[goal] < best) {
+                best = _local[goal];
+                target = goal;
+            }
+        }
+        for (int node : _nodes[chunk]) {
+            if (reached(node) && _stamp[node] == _generation) {
+                final int distance = _local[node] + _distance[node];
+                if (distance < best) {
+                    best = distance;
+                    target = node;
+                }
+            }
+        }
+        if (target < 0) {
+            return UNREACHABLE;
+        }
+        if (target == from && best > 0) {
+            // Standing on a node:  head for the next one
+            target = _next[from];
+            if (_chunkOf[target] != chunk || !reached(target)) {
+                _direction = towards(from, target);
+                return best;
+            }
+        }
+        if (target != from) {
+            _direction = AIMS[_localFirst[target]];
+        }
+        return best;
+    }
+
+    /**
+     * @return first move of the last {@link #route}, or null if it started on a goal or found
+     *         none
+     */
+    public Aim getDirection() {
+        return _direction;
+    }
+
+    /**
+     * @return number of nodes in the abstract graph
+     */
+    public int getNodeCount() {
+        rebuild();
+        int count = 0;
+        for (int[] nodes : _nodes) {
+            count += nodes.length;
+        }
+        return count;
+    }
+
+    /**
+     * @return number of times a chunk's nodes and distances have been rebuilt
+     */
+    public int getChunkRebuilds() {
+        return _chunkRebuilds;
+    }
+
+    private Aim towards(int from, int to) {
+        for (Aim aim : AIMS) {
+            if (_registry.neighbor(from, aim) == to) {
+                return aim;
+            }
+        }
+        throw new IllegalStateException(String.format("[%s] isn't next to [%s]",
+                                                      _registry.tileAt(to), _registry.tileAt(from)));
+    }
+
+    // --- Abstract graph maintenance ---
+
+    private void rebuild() {
+        if (!_anyDirty) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        final int chunks = _dirty.length;
+        final boolean[] affected = new boolean[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            if (_dirty[chunk]) {
+                final int west = west(chunk), north = north(chunk);
+                _east[chunk] = scanBorder(chunk, true);
+                _south[chunk] = scanBorder(chunk, false);
+                _east[west] = scanBorder(west, true);
+                _south[north] = scanBorder(north, false);
+                affected[chunk] = affected[west] = affected[north] = true;
+                affected[east(chunk)] = affected[south(chunk)] = true;
+            }
+        }
+        int rebuilt = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            if (affected[chunk]) {
+                buildNodes(chunk);
+                buildDistances(chunk);
+                rebuilt++;
+            }
+        }
+        Arrays.fill(_dirty, false);
+        _anyDirty = false;
+        _version++;
+        _chunkRebuilds += rebuilt;
+        _log.debug("Rebuilt %d chunk(s) of the abstract graph in %d ms", rebuilt,
+                   System.currentTimeMillis() - start);
+    }
+
+    // Finds the entrances along a chunk's east or south border
+    private int[] scanBorder(int chunk, boolean east) {
+        final Registry r = _registry;
+        final int rowStart = (chunk / _chunkCols) * _chunkSize;
+        final int colStart = (chunk % _chunkCols) * _chunkSize;
+        final int length = east ? Math.min(_chunkSize, r.getRows() - rowStart)
+                                : Math.min(_chunkSize, r.getCols() - colStart);
+        final int row = east ? rowStart : Math.min(rowStart + _chunkSize, r.getRows()) - 1;
+        final int col = east ? Math.min(colStart + _chunkSize, r.getCols()) - 1 : colStart;
+        final Aim across = east ? Aim.EAST : Aim.SOUTH;
+        final Aim along = east ? Aim.SOUTH : Aim.EAST;
+        CellList pairs = new CellList();
+        int runStart = -1;
+        int inside = r.getCell(row, col);
+        for (int i = 0; i <= length; i++) {
+            final boolean open = i < length && r.isPassable(inside)
+                    && r.isPassable(r.neighbor(inside, across));
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                final int width = i - runStart;
+                if (width < WIDE_ENTRANCE) {
+                    addTransition(pairs, row, col, along, runStart + width / 2, across);
+                } else {
+                    addTransition(pairs, row, col, along, runStart, across);
+                    addTransition(pairs, row, col, along, i - 1, across);
+                }
+                runStart = -1;
+            }
+            inside = r.neighbor(inside, along);
+        }
+        final int[] result = new int[pairs.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pairs.get(i);
+        }
+        return result;
+    }
+
+    private void addTransition(CellList pairs, int row, int col, Aim along, int offset, Aim across) {
+        final int inside = (along == Aim.SOUTH) ? _registry.getCell(row + offset, col)
+                                                : _registry.getCell(row, col + offset);
+        pairs.add(inside);
+        pairs.add(_registry.neighbor(inside, across));
+    }
+
+    private void buildNodes(int chunk) {
+        for (int node : _nodes[chunk]) {
+            _nodeIndex[node] = -1;
+        }
+        CellList nodes = new CellList();
+        addNodes(nodes, _east[chunk], 0, chunk);
+        addNodes(nodes, _south[chunk], 0, chunk);
+        addNodes(nodes, _east[west(chunk)], 1, chunk);
+        addNodes(nodes, _south[north(chunk)], 1, chunk);
+        _nodes[chunk] = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            _nodes[chunk][i] = nodes.get(i);
+        }
+    }
+
+    private void addNodes(CellList nodes, int[] pairs, int side, int chunk) {
+        if (pairs == null) {
+            return;
+        }
+        for (int i = side; i < pairs.length; i += 2) {
+            final int cell = pairs[i];
+            if (_chunkOf[cell] == chunk && _nodeIndex[cell] < 0) {
+                _nodeIndex[cell] = nodes.size();
+                nodes.add(cell);
+            }
+        }
+    }
+
+    private void buildDistances(int chunk) {
+        final int[] nodes = _nodes[chunk];
+        final int n = nodes.length;
+        final int[] intra = new int[n * n];
+        for (int i = 0; i < n; i++) {
+            searchChunk(nodes[i], chunk);
+            for (int j = 0; j < n; j++) {
+                intra[i * n + j] = reached(nodes[j]) ? _local[nodes[j]] : UNREACHABLE;
+            }
+        }
+        _intra[chunk] = intra;
+    }
+
+    private int east(int chunk) {
+        final int row = chunk / _chunkCols, col = chunk % _chunkCols;
+        return row * _chunkCols + (col + 1) % _chunkCols;
+    }
+
+    private int west(int chunk) {
+        final int row = chunk / _chunkCols, col = chunk % _chunkCols;
+        return row * _chunkCols + (col + _chunkCols - 1) % _chunkCols;
+    }
+
+    private int south(int chunk) {
+        final int row = chunk / _chunkCols, col = chunk % _chunkCols;
+        return ((row + 1) % _chunkRows) * _chunkCols + col;
+    }
+
+    private int north(int chunk) {
+        final int row = chunk / _chunkCols, col = chunk % _chunkCols;
+        return ((row + _chunkRows - 1) % _chunkRows) * _chunkCols + col;
+    }
+
+    // --- Searches ---
+
+    // Breadth-first search over passable cells of one chunk
+    private void searchChunk(int source, int chunk) {
+        final Registry r = _registry;
+        if (++_localGeneration == 0) {
+            Arrays.fill(_localStamp, 0);
+            _localGeneration = 1;
+        }
+        int head = 0, tail = 0;
+        _localStamp[source] = _localGeneration;
+        _local[source] = 0;
+        _queue[tail++] = source;
+        while (head < tail) {
+            final int cell = _queue[head++];
+            final int distance = _local[cell] + 1;
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (_localStamp[neighbor] != _localGeneration && _chunkOf[neighbor] == chunk
+                        && r.isPassable(neighbor)) {
+                    _localStamp[neighbor] = _localGeneration;
+                    _local[neighbor] = distance;
+                    _localFirst[neighbor] = (cell == source) ? (byte) aim.ordinal() : _localFirst[cell];
+                    _queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    private boolean reached(int cell) {
+        return _localStamp[cell] == _localGeneration;
+    }
+
+    // Dijkstra backwards from the goals over the abstract graph
+    private void search() {
+        long start = System.currentTimeMillis();
+        if (++_generation == 0) {
+            Arrays.fill(_stamp, 0);
+            _generation = 1;
+        }
+        _open.clear();
+        for (int goal : _goals) {
+            if (!_registry.isPassable(goal)) {
+                continue;
+            }
+            final int chunk = _chunkOf[goal];
+            searchChunk(goal, chunk);
+            for (int node : _nodes[chunk]) {
+                if (reached(node)) {
+                    relax(node, _local[node], -1);
+                }
+            }
+        }
+        int expanded = 0;
+        while (!_open.isEmpty()) {
+            final int node = _open.poll();
+            _state[node] = CLOSED;
+            expanded++;
+            final int chunk = _chunkOf[node];
+            final int distance = _distance[node];
+            final int[] nodes = _nodes[chunk];
+            final int n = nodes.length;
+            final int row = _nodeIndex[node] * n;
+            for (int j = 0; j < n; j++) {
+                final int step = _intra[chunk][row + j];
+                if (step > 0) {
+                    relax(nodes[j], distance + step, node);
+                }
+            }
+            relaxAcross(node, _east[chunk], 0, distance);
+            relaxAcross(node, _south[chunk], 0, distance);
+            relaxAcross(node, _east[west(chunk)], 1, distance);
+            relaxAcross(node, _south[north(chunk)], 1, distance);
+        }
+        _searchVersion = _version;
+        _log.debug("Searched %d abstract node(s) from %d goal(s) in %d ms", expanded, _goals.length,
+                   System.currentTimeMillis() - start);
+    }
+
+    private void relaxAcross(int node, int[] pairs, int side, int distance) {
+        for (int i = side; i < pairs.length; i += 2) {
+            if (pairs[i] == node) {
+                relax(pairs[i ^ 1], distance + 1, node);
+            }
+        }
+    }
+
+    private void relax(int node, int distance, int next) {
+        if (_stamp[node] != _generation) {
+            _stamp[node] = _generation;
+            _state[node] = OPEN;
+            _distance[node] = distance;
+            _next[node] = next;
+            _open.add(node, distance);
+        } else if (_state[node] == OPEN && distance < _distance[node]) {
+            _distance[node] = distance;
+            _next[node] = next;
+            _open.decreaseKey(node, distance);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * True walking distances from each of my hills to every cell, kept up to date as the map is
+ * discovered.
+ *
+ * Each hill gets a breadth-first distance field, built once when the hill is first seen.  New
+ * water can only lengthen distances, and only for cells whose every shortest route ran through
+ * it, so rather than rebuilding the field the oracle finds those orphaned cells (in order of
+ * their old distance, so a cell is only orphaned once all the cells it could have come from
+ * are) and re-settles just them, starting from their intact neighbours.
+ *
+ * Distances are held as shorts; anything farther than {@link #FAR} is reported as FAR.
+ */
+public class HillDistanceOracle implements Registry.TerrainListener {
+
+    /**
+     * Distance reported for cells that can't reach a hill, or when there are no hills.
+     */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * Largest distance held; longer distances are capped at this.
+     */
+    public static final int FAR = Short.MAX_VALUE;
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private static final LogFacade _log = LogFacade.get(HillDistanceOracle.class);
+
+    private final Registry _registry;
+    // Distance field of each hill, by hill cell
+    private final Map<Integer, short[]> _fields = new LinkedHashMap<Integer, short[]>();
+    // Water discovered since the fields were last repaired
+    private final CellList _newWater = new CellList();
+    private final int[] _queue;
+    private final CellHeap _heap;
+    // Orphaned cells of the current repair, valid where stamped with _generation
+    private final int[] _orphanStamp;
+    private final int[] _candidateStamp;
+    private final CellList _orphans = new CellList();
+    private int _generation = 0;
+
+    public HillDistanceOracle(Registry registry) {
+        _registry = registry;
+        final int cells = registry.getCellCount();
+        _queue = new int[cells];
+        _heap = new CellHeap(cells);
+        _orphanStamp = new int[cells];
+        _candidateStamp = new int[cells];
+    }
+
+    /**
+     * Brings the fields up to date with the current hills and any water discovered since the
+     * last update.  Call once per turn.
+     *
+     * @param myHills my hills as of this turn
+     */
+    public void update(Collection<Tile> myHills) {
+        long start = System.currentTimeMillis();
+        int repaired = 0;
+        if (_newWater.size() > 0) {
+            for (short[] field : _fields.values()) {
+                repaired += repair(field);
+            }
+            _newWater.clear();
+        }
+        for (Iterator<Integer> hills = _fields.keySet().iterator(); hills.hasNext(); ) {
+            if (!myHills.contains(_registry.tileAt(hills.next()))) {
+                hills.remove();
+            }
+        }
+        int built = 0;
+        for (Tile hill : myHills) {
+            final int cell = _registry.getCell(hill);
+            if (!_fields.containsKey(cell)) {
+                _fields.put(cell, build(cell));
+                built++;
+            }
+        }
+        if (built > 0 || repaired > 0) {
+            _log.debug("Built %d hill distance field(s) and re-settled %d cell(s) in %d ms",
+                       built, repaired, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @param cell newly discovered water cell
+     */
+    @Override
+    public void waterDiscovered(int cell) {
+        _newWater.add(cell);
+    }
+
+    /**
+     * @return true if there is at least one hill to measure from
+     */
+    public boolean hasHills() {
+        return !_fields.isEmpty();
+    }
+
+    /**
+     * @param hill my hill
+     * @return true if distances from the hill are being tracked
+     */
+    public boolean tracks(Tile hill) {
+        return _fields.containsKey(_registry.getCell(hill));
+    }
+
+    /**
+     * @param cell cell id
+     * @return moves from the cell to my nearest hill, or {@link #UNREACHABLE}
+     */
+    public int walkDistanceToNearestHill(int cell) {
+        int nearest = UNREACHABLE;
+        for (short[] field : _fields.values()) {
+            final int distance = field[cell];
+            if (distance != UNREACHABLE && (nearest == UNREACHABLE || distance < nearest)) {
+                nearest = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @param hill one of my hills
+     * @param cell cell id
+     * @return moves from the cell to the hill, or {@link #UNREACHABLE} if the cell can't reach
+     *         the hill or the hill isn't tracked
+     */
+    public int walkDistance(Tile hill, int cell) {
+        short[] field = _fields.get(_registry.getCell(hill));
+        return (field == null) ? UNREACHABLE : field[cell];
+    }
+
+    private short[] build(int hill) {
+        final Registry r = _registry;
+        short[] field = new short[r.getCellCount()];
+        Arrays.fill(field, (short) UNREACHABLE);
+        int head = 0, tail = 0;
+        field[hill] = 0;
+        _queue[tail++] = hill;
+        while (head < tail) {
+            final int cell = _queue[head++];
+            final short next = (short) Math.min(field[cell] + 1, FAR);
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (field[neighbor] == UNREACHABLE && r.isPassable(neighbor)) {
+                    field[neighbor] = next;
+                    _queue[tail++] = neighbor;
+                }
+            }
+        }
+        return field;
+    }
+
+    // Re-settles the cells whose distances the new water may have lengthened
+    private int repair(short[] field) {
+        final Registry r = _registry;
+        if (++_generation == 0) {
+            Arrays.fill(_orphanStamp, 0);
+            Arrays.fill(_candidateStamp, 0);
+            _generation = 1;
+        }
+        // Find the orphans, nearest the hill first
+        _heap.clear();
+        _orphans.clear();
+        for (int i = 0; i < _newWater.size(); i++) {
+            final int water = _newWater.get(i);
+            if (field[water] != UNREACHABLE) {
+                _orphanStamp[water] = _generation;
+                addChildren(field, water);
+                field[water] = UNREACHABLE;
+            }
+        }
+        while (!_heap.isEmpty()) {
+            final int cell = _heap.poll();
+            if (!hasParent(field, cell)) {
+                _orphanStamp[cell] = _generation;
+                _orphans.add(cell);
+                addChildren(field, cell);
+            }
+        }
+        // Settle the orphans outwards from their best intact neighbours
+        _heap.clear();
+        for (int i = 0; i < _orphans.size(); i++) {
+            final int orphan = _orphans.get(i);
+            int best = UNREACHABLE;
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(orphan, aim);
+                final int distance = field[neighbor];
+                if (_orphanStamp[neighbor] != _generation && distance != UNREACHABLE
+                        && (best == UNREACHABLE || distance + 1 < best)) {
+                    best = distance + 1;
+                }
+            }
+            field[orphan] = (short) UNREACHABLE;
+            if (best != UNREACHABLE) {
+                field[orphan] = (short) Math.min(best, FAR);
+                _heap.add(orphan, best);
+            }
+        }
+        while (!_heap.isEmpty()) {
+            final int cell = _heap.poll();
+            final int next = field[cell] + 1;
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (_orphanStamp[neighbor] != _generation || !r.isPassable(neighbor)) {
+                    continue;
+                }
+                if (field[neighbor] == UNREACHABLE) {
+                    field[neighbor] = (short) Math.min(next, FAR);
+                    _heap.add(neighbor, next);
+                } else if (next < field[neighbor]) {
+                    field[neighbor] = (short) next;
+                    _heap.decreaseKey(neighbor, next);
+                }
+            }
+        }
+        return _orphans.size();
+    }
+
+    // Queues the cells one step farther from the hill than 'cell' as possible orphans
+    private void addChildren(short[] field, int cell) {
+        final int distance = field[cell];
+        for (Aim aim : AIMS) {
+            final int neighbor = _registry.neighbor(cell, aim);
+            if (field[neighbor] == distance + 1 && _candidateStamp[neighbor] != _generation
+                    && _orphanStamp[neighbor] != _generation && _registry.isPassable(neighbor)) {
+                _candidateStamp[neighbor] = _generation;
+                _heap.add(neighbor, field[neighbor]);
+            }
+        }
+    }
+
+    // Whether the cell still has an intact neighbour one step nearer the hill
+    private boolean hasParent(short[] field, int cell) {
+        final int distance = field[cell];
+        for (Aim aim : AIMS) {
+            final int neighbor = _registry.neighbor(cell, aim);
+            if (field[neighbor] == distance - 1 && _orphanStamp[neighbor] != _generation) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
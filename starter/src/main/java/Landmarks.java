@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+/**
+ * Landmark distance tables for the ALT ("A*, landmarks, triangle inequality") heuristic.
+ *
+ * For a landmark L, |d(L, goal) - d(L, cell)| never exceeds the true distance from cell to goal,
+ * and on maze-like maps it's a far tighter bound than Manhattan distance.  Landmarks are spread
+ * out by farthest-point selection and each gets a breadth-first distance table over passable
+ * cells.
+ *
+ * Discovering water only ever lengthens distances, so a table computed before some water was
+ * found still gives an admissible (and consistent) bound; it's just looser.  Stale tables are
+ * therefore refreshed a few per turn rather than all at once.
+ */
+public class Landmarks {
+
+    /**
+     * Distance reported for cells a landmark can't reach.
+     */
+    public static final int UNREACHABLE = -1;
+
+    public static final int DEFAULT_COUNT = 8;
+
+    private static final LogFacade _log = LogFacade.get(Landmarks.class);
+
+    private final Registry _registry;
+    private final int[] _landmarks;
+    private final int[][] _distance;
+    // Registry water count when each table was computed
+    private final int[] _waterCount;
+    private final int[] _queue;
+    private final int[] _nearest;
+    private int _nextRefresh = 0;
+
+    /**
+     * Selects landmarks on the map as currently known and computes their tables.
+     *
+     * @param registry game state
+     * @param count    number of landmarks
+     */
+    public Landmarks(Registry registry, int count) {
+        _registry = registry;
+        final int cells = registry.getCellCount();
+        _landmarks = new int[count];
+        _distance = new int[count][cells];
+        _waterCount = new int[count];
+        _queue = new int[cells];
+        _nearest = new int[cells];
+        long start = System.currentTimeMillis();
+        // Seed selection from the point farthest from an arbitrary cell
+        int seed = firstPassable();
+        if (seed < 0) {
+            throw new IllegalStateException("No passable cells");
+        }
+        bfs(seed, _distance[0]);
+        int landmark = farthestFrom(1, -1);
+        for (int i = 0; i < count; i++) {
+            _landmarks[i] = landmark;
+            compute(i);
+            landmark = farthestFrom(i + 1, -1);
+        }
+        _log.info("Computed %d landmark tables in %d ms", count, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return number of landmarks
+     */
+    public int getCount() {
+        return _landmarks.length;
+    }
+
+    /**
+     * @param landmark landmark index
+     * @return cell of the landmark
+     */
+    public int getLandmark(int landmark) {
+        return _landmarks[landmark];
+    }
+
+    /**
+     * @param landmark landmark index
+     * @param cell     cell id
+     * @return moves from the landmark to the cell as of the landmark's last refresh, or
+     *         {@link #UNREACHABLE}
+     */
+    public int getDistance(int landmark, int cell) {
+        return _distance[landmark][cell];
+    }
+
+    /**
+     * Loads each landmark's distance to a goal, for repeated use with {@link #lowerBound}.
+     *
+     * @param goal          goal cell
+     * @param goalDistances receives one distance per landmark
+     */
+    public void loadGoal(int goal, int[] goalDistances) {
+        for (int i = 0; i < _landmarks.length; i++) {
+            goalDistances[i] = _distance[i][goal];
+        }
+    }
+
+    /**
+     * @param cell          cell id
+     * @param goalDistances landmark distances to the goal, from {@link #loadGoal}
+     * @return lower bound on the moves from <code>cell</code> to the goal
+     */
+    public int lowerBound(int cell, int[] goalDistances) {
+        int bound = 0;
+        for (int i = 0; i < _landmarks.length; i++) {
+            final int toGoal = goalDistances[i];
+            final int toCell = _distance[i][cell];
+            if (toGoal != UNREACHABLE && toCell != UNREACHABLE) {
+                final int difference = (toGoal > toCell) ? toGoal - toCell : toCell - toGoal;
+                if (difference > bound) {
+                    bound = difference;
+                }
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Recomputes up to the specified number of tables that predate the latest water, in
+     * round-robin order.  A landmark that turned out to be water is moved first.
+     *
+     * @param maxTables maximum number of tables to recompute
+     * @return number of tables recomputed
+     */
+    public int refresh(int maxTables) {
+        final int waterCount = _registry.getWaterCount();
+        int refreshed = 0;
+        for (int checked = 0; checked < _landmarks.length && refreshed < maxTables; checked++) {
+            final int i = _nextRefresh;
+            _nextRefresh = (_nextRefresh + 1) % _landmarks.length;
+            if (_waterCount[i] != waterCount) {
+                if (!_registry.isPassable(_landmarks[i])) {
+                    _landmarks[i] = farthestFrom(_landmarks.length, i);
+                }
+                compute(i);
+                refreshed++;
+            }
+        }
+        return refreshed;
+    }
+
+    private void compute(int landmark) {
+        bfs(_landmarks[landmark], _distance[landmark]);
+        _waterCount[landmark] = _registry.getWaterCount();
+    }
+
+    // Passable cell farthest from the first 'count' landmarks, other than 'skip'
+    private int farthestFrom(int count, int skip) {
+        Arrays.fill(_nearest, Integer.MAX_VALUE);
+        for (int i = 0; i < count; i++) {
+            if (i != skip) {
+                merge(_distance[i]);
+            }
+        }
+        return argmax();
+    }
+
+    private void merge(int[] table) {
+        for (int cell = 0; cell < _nearest.length; cell++) {
+            if (table[cell] != UNREACHABLE && table[cell] < _nearest[cell]) {
+                _nearest[cell] = table[cell];
+            }
+        }
+    }
+
+    private int argmax() {
+        int best = -1;
+        int bestDistance = -1;
+        for (int cell = 0; cell < _nearest.length; cell++) {
+            final int distance = _nearest[cell];
+            if (distance != Integer.MAX_VALUE && distance > bestDistance && _registry.isPassable(cell)) {
+                best = cell;
+                bestDistance = distance;
+            }
+        }
+        return (best < 0) ? firstPassable() : best;
+    }
+
+    private int firstPassable() {
+        for (int cell = 0; cell < _nearest.length; cell++) {
+            if (_registry.isPassable(cell)) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private void bfs(int source, int[] distance) {
+        final Registry r = _registry;
+        Arrays.fill(distance, UNREACHABLE);
+        int head = 0, tail = 0;
+        distance[source] = 0;
+        _queue[tail++] = source;
+        while (head < tail) {
+            final int cell = _queue[head++];
+            final int next = distance[cell] + 1;
+            for (Aim aim : Aim.values()) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (distance[neighbor] == UNREACHABLE && r.isPassable(neighbor)) {
+                    distance[neighbor] = next;
+                    _queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+}
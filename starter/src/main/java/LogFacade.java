@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -33,7 +34,7 @@ public abstract class LogFacade {
 
     private static final Map<Class, LogFacade> _loggers = new HashMap<Class, LogFacade>();
 
-    public static LogFacade get(Class c) {
+    public static synchronized LogFacade get(Class c) {
         LogFacade f = null;
         if (c != null) {
             f = _loggers.get(c);
@@ -67,6 +68,12 @@ public abstract class LogFacade {
         @Override
         protected void implSetTestConfig() {
             _log.setLevel(Level.FINE);
+            // Each test class sets up logging again; one console handler is enough
+            for (Handler handler : _log.getHandlers()) {
+                if (handler instanceof ConsoleHandler) {
+                    return;
+                }
+            }
             _log.addHandler(new ConsoleHandler());
         }
 
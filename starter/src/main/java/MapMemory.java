@@ -0,0 +1,171 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent knowledge of the game map that survives between turns:  which cells have ever
+ * been seen, when each was last seen, a sparse sample of currently unseen tiles for
+ * exploration, and remembered enemy hills and food.
+ *
+ * Everything is driven by visibility transitions reported by {@link Registry}, so upkeep is
+ * proportional to the number of cells entering or leaving view rather than the map area.
+ */
+public class MapMemory {
+
+    private final Registry _registry;
+    private final int _samplingRate;
+    private final boolean[] _known;
+    private final short[] _lastSeen;
+    private final Set<Tile> _unseenSample;
+    private final Map<Tile, Integer> _enemyHills = new HashMap<Tile, Integer>();
+    private final Map<Tile, Integer> _food = new HashMap<Tile, Integer>();
+    private int _turn = 0;
+    private int _previousVisionTurn = 0;
+
+    /**
+     * @param registry     game state this memory tracks
+     * @param samplingRate row/column stride of the unseen tile sample
+     */
+    public MapMemory(Registry registry, int samplingRate) {
+        _registry = registry;
+        _samplingRate = samplingRate;
+        _known = new boolean[registry.getCellCount()];
+        _lastSeen = new short[registry.getCellCount()];
+        _unseenSample = new HashSet<Tile>();
+        for (int row = 0; row < registry.getRows(); row += samplingRate) {
+            for (int col = 0; col < registry.getCols(); col += samplingRate) {
+                _unseenSample.add(registry.tileAt(row, col));
+            }
+        }
+    }
+
+    /**
+     * Called once per turn, before visibility is updated.
+     *
+     * @param turn current turn
+     */
+    void startTurn(int turn) {
+        _turn = turn;
+    }
+
+    /**
+     * Called once per turn, after visibility has been updated.  Forgets remembered hills and
+     * food that are in view but no longer present.
+     */
+    void visionUpdated() {
+        forgetMissing(_enemyHills, _registry.getEnemyHills());
+        forgetMissing(_food, _registry.getFoodTiles());
+        _previousVisionTurn = _turn;
+    }
+
+    private void forgetMissing(Map<Tile, Integer> remembered, Set<Tile> present) {
+        for (Iterator<Map.Entry<Tile, Integer>> entries = remembered.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<Tile, Integer> entry = entries.next();
+            Tile t = entry.getKey();
+            if (present.contains(t)) {
+                entry.setValue(_turn);
+            } else if (_registry.isVisible(t)) {
+                entries.remove();
+            }
+        }
+    }
+
+    // A cell came into view
+    void sighted(int cell) {
+        _known[cell] = true;
+        if (isSampled(cell)) {
+            _unseenSample.remove(_registry.tileAt(cell));
+        }
+    }
+
+    // A cell dropped out of view
+    void lost(int cell) {
+        _lastSeen[cell] = (short) _previousVisionTurn;
+        if (isSampled(cell) && _registry.isPassable(cell)) {
+            _unseenSample.add(_registry.tileAt(cell));
+        }
+    }
+
+    void rememberEnemyHill(Tile hill) {
+        _enemyHills.put(hill, _turn);
+    }
+
+    void rememberFood(Tile food) {
+        _food.put(food, _turn);
+    }
+
+    private boolean isSampled(int cell) {
+        return _registry.getRow(cell) % _samplingRate == 0 && _registry.getCol(cell) % _samplingRate == 0;
+    }
+
+    /**
+     * @param cell cell id
+     * @return true if the cell has ever been in view
+     */
+    public boolean isKnown(int cell) {
+        return _known[cell];
+    }
+
+    /**
+     * @param cell cell id
+     * @return turn the cell was last in view, or -1 if it has never been seen
+     */
+    public int getLastSeen(int cell) {
+        if (_registry.isVisible(cell)) {
+            return _turn;
+        }
+        return _known[cell] ? _lastSeen[cell] : -1;
+    }
+
+    /**
+     * @param cell cell id
+     * @return number of turns since the cell was last in view, or the current turn number if it
+     *         has never been seen
+     */
+    public int getAge(int cell) {
+        int lastSeen = getLastSeen(cell);
+        return (lastSeen < 0) ? _turn : _turn - lastSeen;
+    }
+
+    /**
+     * @return sparse sample of passable tiles that are out of view this turn
+     */
+    public Set<Tile> getUnseenSample() {
+        return Collections.unmodifiableSet(_unseenSample);
+    }
+
+    /**
+     * @return enemy hills seen at some point and not since confirmed missing
+     */
+    public Set<Tile> getRememberedEnemyHills() {
+        return Collections.unmodifiableSet(_enemyHills.keySet());
+    }
+
+    /**
+     * @return food seen at some point and not since confirmed missing
+     */
+    public Set<Tile> getRememberedFood() {
+        return Collections.unmodifiableSet(_food.keySet());
+    }
+
+    /**
+     * @param food remembered food location
+     * @return number of turns since the food was last seen, or -1 if it isn't remembered
+     */
+    public int getFoodStaleness(Tile food) {
+        Integer seen = _food.get(food);
+        return (seen == null) ? -1 : _turn - seen.intValue();
+    }
+
+    /**
+     * @param hill remembered enemy hill location
+     * @return number of turns since the hill was last seen, or -1 if it isn't remembered
+     */
+    public int getEnemyHillStaleness(Tile hill) {
+        Integer seen = _enemyHills.get(hill);
+        return (seen == null) ? -1 : _turn - seen.intValue();
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.Arrays;
+
+/**
+ * Minimum total cost assignment of rows to columns (the Hungarian algorithm, in its O(n^2 m)
+ * shortest augmenting path form).  Each row gets at most one column and each column at most one
+ * row; with more rows than columns the surplus rows stay unassigned.
+ */
+public final class MinCostAssignment {
+
+    /**
+     * Cost of a row-column pair that mustn't be assigned.
+     */
+    public static final int FORBIDDEN = Integer.MAX_VALUE;
+
+    private static final long INFINITY = Long.MAX_VALUE / 4;
+    // Stands in for a forbidden pair, large enough that any permitted assignment beats it
+    private static final long FORBIDDEN_COST = Integer.MAX_VALUE / 2;
+
+    private MinCostAssignment() {
+    }
+
+    /**
+     * @param cost row-major costs, {@link #FORBIDDEN} where a pair mustn't be assigned
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return column assigned to each row, or -1
+     */
+    public static int[] solve(int[] cost, int rows, int cols) {
+        final int[] assignment = new int[rows];
+        Arrays.fill(assignment, -1);
+        if (rows == 0 || cols == 0) {
+            return assignment;
+        }
+        if (rows <= cols) {
+            final int[] columnOf = solveWide(cost, rows, cols, false);
+            for (int row = 0; row < rows; row++) {
+                assignment[row] = columnOf[row];
+            }
+        } else {
+            // Solve the transpose, so the smaller dimension is the one being assigned
+            final int[] rowOf = solveWide(cost, cols, rows, true);
+            for (int col = 0; col < cols; col++) {
+                assignment[rowOf[col]] = col;
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            final int col = assignment[row];
+            if (col >= 0 && cost[row * cols + col] == FORBIDDEN) {
+                assignment[row] = -1;
+            }
+        }
+        return assignment;
+    }
+
+    // Assigns each of n rows a distinct one of m >= n columns
+    private static int[] solveWide(int[] cost, int n, int m, boolean transposed) {
+        // 1-based potentials and matching, with column 0 as the augmenting path's virtual root
+        final long[] u = new long[n + 1];
+        final long[] v = new long[m + 1];
+        final int[] match = new int[m + 1];
+        final int[] way = new int[m + 1];
+        final long[] minimum = new long[m + 1];
+        final boolean[] used = new boolean[m + 1];
+        for (int row = 1; row <= n; row++) {
+            match[0] = row;
+            int col0 = 0;
+            Arrays.fill(minimum, INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[col0] = true;
+                final int row0 = match[col0];
+                long delta = INFINITY;
+                int col1 = 0;
+                for (int col = 1; col <= m; col++) {
+                    if (!used[col]) {
+                        final long reduced = cost(cost, n, m, row0 - 1, col - 1, transposed) - u[row0] - v[col];
+                        if (reduced < minimum[col]) {
+                            minimum[col] = reduced;
+                            way[col] = col0;
+                        }
+                        if (minimum[col] < delta) {
+                            delta = minimum[col];
+                            col1 = col;
+                        }
+                    }
+                }
+                for (int col = 0; col <= m; col++) {
+                    if (used[col]) {
+                        u[match[col]] += delta;
+                        v[col] -= delta;
+                    } else {
+                        minimum[col] -= delta;
+                    }
+                }
+                col0 = col1;
+            } while (match[col0] != 0);
+            do {
+                final int col1 = way[col0];
+                match[col0] = match[col1];
+                col0 = col1;
+            } while (col0 != 0);
+        }
+        final int[] result = new int[n];
+        for (int col = 1; col <= m; col++) {
+            if (match[col] != 0) {
+                result[match[col] - 1] = col - 1;
+            }
+        }
+        return result;
+    }
+
+    private static long cost(int[] cost, int n, int m, int row, int col, boolean transposed) {
+        // When transposed, the caller's matrix has m rows of n columns
+        final int c = transposed ? cost[col * n + row] : cost[row * m + col];
+        return (c == FORBIDDEN) ? FORBIDDEN_COST : c;
+    }
+}
@@ -14,31 +14,66 @@ public class MyBot extends Bot {
     public static void main(String[] args)
             throws IOException {
         LogFacade.setProdConfig();
-        _log = LogFacade.get(MyBot.class);
         _log.info("[[GAME START]]");
         new MyBot().readSystemInput();
     }
 
     private final static int TIME_ALLOCATION_PAD = 50;
     private final static int MY_HILL_RADIUS_OF_REPULSION = 5;
-    private final static int UNSEEN_TILE_SAMPLING_RATE = 5;
-    private final static int UNSEEN_TILE_RECALC_PERIOD = 5;
     private final static float COMBAT_ZONE_SETUP = 1.0f;
     private final static float COMBAT_ZONE_COMBAT = 5.0f;
     private final static float INFLUENCE_MAP_SETUP = 1.0f;
     private final static float INFLUENCE_MAP_MOVEMENT = 1.0f;
+    private final static float PATH_TASKS = 0.5f;
+    // Turns ahead that moving ants reserve their planned cells for
+    private final static int RESERVATION_HORIZON = 4;
+    // Passes over ants held up by another of my ants that hadn't moved yet
+    private final static int MAX_DEFERRED_PASSES = 3;
+    // Target classes to fall back on when none of their targets is close enough for influence to
+    // steer an ant; the ant heads for whichever target of any class is nearest.  Enemy hills,
+    // usually far away, are routed to through the hierarchical pathfinder instead.
+    private final static TargetingPolicy.Type[] FLOW_FIELD_TYPES = {
+            TargetingPolicy.Type.Food,
+            TargetingPolicy.Type.UnseenTile
+    };
+    // Moves within which a target still pulls an ant through the influence map
+    private final static int LOCAL_TARGET_DISTANCE = 10;
 
     private List<CombatZone> _combatZones = new ArrayList<CombatZone>();
     private final Set<Tile> _untargetedAnts = new HashSet<Tile>();
-    private final Set<Tile> _destinations = new HashSet<Tile>();
     private final Set<Tile> _toMove = new HashSet<Tile>();
-    private Set<Tile> _unseenTiles = null;
-    private Set<Tile> _enemyHills = new HashSet<Tile>();
+    // Ants that couldn't move for a reserved or occupied cell, and those waiting on one of my
+    // ants that hasn't moved yet
+    private final Set<Tile> _blocked = new HashSet<Tile>();
+    private final Set<Tile> _deferred = new HashSet<Tile>();
+    private ReservationTable _reservations;
     private final Map<Tile, DefenseZone> _myHillDefenses = new HashMap<Tile, DefenseZone>();
     private int _turn = 0;
-    private static LogFacade _log;
+    private static final LogFacade _log = LogFacade.get(MyBot.class);
+    private Registry _registry;
     private TimeManager _timeManager = null;
     private TargetInfluenceMap _influence;
+    private FlowFields _flowFields;
+    private HierarchicalPathfinder _hillRoutes;
+    private int[] _enemyHillCells = new int[8];
+    private final CellList _nearbyEnemies = new CellList();
+    private BitLayer _threatened;
+
+    public MyBot() {
+    }
+
+    /**
+     * @param context game context this bot plays in, e.g. one of many games hosted by a single
+     *                harness process
+     */
+    public MyBot(GameContext context) {
+        super(context);
+    }
+
+    // The influence map set up by the last turn, or null before the first
+    TargetInfluenceMap getInfluenceMap() {
+        return _influence;
+    }
 
     /**
      * For every ant check every direction in fixed order (N, E, S, W) and move it if the tile is
@@ -65,20 +100,40 @@ public class MyBot extends Bot {
                     }
                 }
             }
+            boolean timedOut = false;
             for (Tile ant : new ArrayList<Tile>(_untargetedAnts)) {
-                for (Iterator<Tile> moves = _influence.getTargets(ant); moves.hasNext(); ) {
-                    if (moveToLocation(ant, moves.next())) {
+                moveUntargeted(ant);
+                if (_timeManager.stepTimeOverrun()) {
+                    timedOut = true;
+                    break;
+                }
+            }
+            // Ants stuck behind one of mine that has since moved get another go
+            for (int pass = 0; pass < MAX_DEFERRED_PASSES && !timedOut && !_deferred.isEmpty(); pass++) {
+                List<Tile> deferred = new ArrayList<Tile>(_deferred);
+                _deferred.clear();
+                int moved = 0;
+                for (Tile ant : deferred) {
+                    if (_untargetedAnts.contains(ant) && moveUntargeted(ant)) {
+                        moved++;
+                    }
+                    if (_timeManager.stepTimeOverrun()) {
+                        timedOut = true;
                         break;
                     }
                 }
-                if (_timeManager.stepTimeOverrun()) {
+                if (moved == 0) {
                     break;
                 }
             }
             _log.debug("Moved %d ants in %d ms",
-                       Registry.Instance.getMyAnts().size() - _untargetedAnts.size(),
+                       _registry.getMyAnts().size() - _untargetedAnts.size(),
                        System.currentTimeMillis() - start);
 
+            // Spend what's left on searches that can carry over to later turns
+            _timeManager.nextStep(PATH_TASKS, "Path Tasks");
+            getContext().getPathTasks().run(_timeManager);
+
             concludeTurn();
         } catch (Throwable t) {
             _log.error("Unexpected turn processing error", t);
@@ -89,12 +144,17 @@ public class MyBot extends Bot {
     private void startTurn() {
         long setupStart = System.currentTimeMillis();
         _log.info(String.format("[[...turn %d...]]", _turn));
+        _registry = getContext().getRegistry();
 
         // Track targeted ants through turn
-        _untargetedAnts.addAll(Registry.Instance.getMyAnts());
+        _untargetedAnts.addAll(_registry.getMyAnts());
+        if (_reservations == null) {
+            _reservations = new ReservationTable(_registry.getCellCount(), RESERVATION_HORIZON);
+        }
+        _reservations.startTurn(_turn);
 
         // Time management
-        int managedTimeAllocation = Registry.Instance.getTurnTime() - TIME_ALLOCATION_PAD;
+        int managedTimeAllocation = _registry.getTurnTime() - TIME_ALLOCATION_PAD;
         if (_timeManager == null || _timeManager.getTotalAllowed() != managedTimeAllocation) {
             _timeManager = new TimeManager(managedTimeAllocation);
         }
@@ -103,100 +163,81 @@ public class MyBot extends Bot {
         // Don't defend old hills
         for (Iterator<Tile> oldHills = _myHillDefenses.keySet().iterator(); oldHills.hasNext(); ) {
             Tile oldHill = oldHills.next();
-            if (!Registry.Instance.getMyHills().contains(oldHill)) {
+            if (!_registry.getMyHills().contains(oldHill)) {
                 _log.debug("Removing defense policy for dead hill [%s]", oldHill);
                 oldHills.remove();
             }
         }
-        for (Tile myHill : Registry.Instance.getMyHills()) {
+        for (Tile myHill : _registry.getMyHills()) {
             DefenseZone defense = _myHillDefenses.get(myHill);
             if (defense == null) {
                 // Aim to keep ants at least 6 moves away from my hills
-                defense = new DefenseZone(myHill, MY_HILL_RADIUS_OF_REPULSION);
+                defense = new DefenseZone(getContext(), myHill, MY_HILL_RADIUS_OF_REPULSION);
                 _myHillDefenses.put(myHill, defense);
             }
         }
 
-        if (_unseenTiles == null || _turn % UNSEEN_TILE_RECALC_PERIOD == 0) {
-            final int numRows = Registry.Instance.getRows();
-            final int numCols = Registry.Instance.getCols();
-            if (_unseenTiles == null) {
-                _unseenTiles = new HashSet<Tile>(numRows * numCols);
-            }
-            else {
-                _unseenTiles.clear();
-            }
-            // Sparsely sample the board for unseen tiles
-            for (int row = 0; row < numRows; row += UNSEEN_TILE_SAMPLING_RATE) {
-                for (int col = 0; col < numCols; col += UNSEEN_TILE_SAMPLING_RATE) {
-                    if (!Registry.Instance.isVisible(row, col) &&
-                        Registry.Instance.getIlk(row, col) != Ilk.WATER) {
-                        _unseenTiles.add(new Tile(row, col));
-                    }
-                }
-            }
-        } else {
-            // remove any tiles that can be seen, run each turn
-            for (Iterator<Tile> locIter = _unseenTiles.iterator(); locIter.hasNext(); ) {
-                Tile next = locIter.next();
-                if (Registry.Instance.isVisible(next)) {
-                    locIter.remove();
-                }
-            }
-        }
-
-        // Manage enemy hills set
-        for (Iterator<Tile> enemyHills = _enemyHills.iterator(); enemyHills.hasNext(); ) {
-            Tile enemyHill = enemyHills.next();
-            // Remove those that we've seen, but are confirmed dead/missing
-            if (!Registry.Instance.getEnemyHills().contains(enemyHill) &&
-                Registry.Instance.isVisible(enemyHill)) {
-                enemyHills.remove();
-            }
-        }
-        for (Tile enemyHill : Registry.Instance.getEnemyHills()) {
-            _enemyHills.add(enemyHill);
-        }
-
         _log.info("Unmanaged setup operations completed in %d ms", System.currentTimeMillis() - setupStart);
 
         createCombatZones();
 
         if (_influence == null) {
-            _influence = new TargetInfluenceMap();
+            _influence = new TargetInfluenceMap(getContext(), TargetInfluenceMap.selectPropagation(_registry));
+            _flowFields = new FlowFields(getContext());
         }
         _timeManager.nextStep(INFLUENCE_MAP_SETUP, "Influence Map Setup");
         long start = System.currentTimeMillis();
-        _influence.reset(_unseenTiles,
-                         _enemyHills,
+        MapMemory memory = _registry.getMemory();
+        _influence.reset(memory.getUnseenSample(),
+                         memory.getRememberedEnemyHills(),
                          _timeManager,
                          _myHillDefenses.values(),
                          _combatZones);
+        _flowFields.update(memory.getUnseenSample(), _myHillDefenses.values());
+        updateHillRoutes(memory.getRememberedEnemyHills());
         _log.info("Set up influence map in %d ms", System.currentTimeMillis() - start);
     }
 
+    private void updateHillRoutes(Set<Tile> enemyHills) {
+        _hillRoutes = getContext().getHierarchicalPathfinder();
+        if (_enemyHillCells.length < enemyHills.size()) {
+            _enemyHillCells = new int[enemyHills.size() * 2];
+        }
+        int count = 0;
+        for (Tile hill : enemyHills) {
+            _enemyHillCells[count++] = _registry.getCell(hill);
+        }
+        _hillRoutes.update(_enemyHillCells, count);
+    }
+
     private void concludeTurn() {
 
         _timeManager.turnDone();
         long start = _timeManager.getTurnStartMs();
         long finish = System.currentTimeMillis();
         _log.info(String.format("[[ # turn %d processing took %d ms, allowed %d.  Overall remaining: %d # ]]",
-                                _turn, finish - start, Registry.Instance.getTurnTime(), Registry.Instance.getTimeRemaining()));
+                                _turn, finish - start, _registry.getTurnTime(), _registry.getTimeRemaining()));
 
-        _destinations.clear();
         int numTargetedAnts = _toMove.size();
         _toMove.clear();
         int numUntargetedAnts = _untargetedAnts.size();
+        _blocked.addAll(_deferred);
+        _blocked.retainAll(_untargetedAnts);
+        int numBlockedAnts = _blocked.size();
+        _blocked.clear();
+        _deferred.clear();
         _untargetedAnts.clear();
         if (numUntargetedAnts > 0) {
-            _log.info(String.format("[[ # Moved %d out of %d ants # ]]", numTargetedAnts, numTargetedAnts + numUntargetedAnts));
+            _log.info(String.format("[[ # Moved %d out of %d ants, %d blocked, %d idle # ]]",
+                                    numTargetedAnts, numTargetedAnts + numUntargetedAnts,
+                                    numBlockedAnts, numUntargetedAnts - numBlockedAnts));
         }
         _turn++;
     }
 
     private void avoidHills() {
-        for (Tile myHill : Registry.Instance.getMyHills()) {
-            _destinations.add(myHill);
+        for (Tile myHill : _registry.getMyHills()) {
+            _reservations.reserve(_registry.getCell(myHill), 1, ReservationTable.BLOCKED);
         }
     }
 
@@ -207,39 +248,47 @@ public class MyBot extends Bot {
         _timeManager.nextStep(COMBAT_ZONE_SETUP, "Combat Zone Setup");
         Map<Tile, List<EnemyAnt>> enemiesInRange = null;
         Map<EnemyAnt, List<Tile>> alliesInRange = null;
-        int range2 = Registry.Instance.getAttackRadius2() * 3 + 2;
+        int range2 = _registry.getAttackRadius2() * 3 + 2;
+        // Cells within range of any enemy, so that ants well clear of enemies skip the lookup
+        if (_threatened == null) {
+            _threatened = new BitLayer(_registry.getRows(), _registry.getCols());
+        }
+        _threatened.dilate(_registry.getEnemyAntLayer(), range2);
         // Find each ant's close-by enemies
-        for (Tile myPos : Registry.Instance.getMyAnts()) {
+        for (Tile myPos : _registry.getMyAnts()) {
+            if (!_threatened.get(_registry.getCell(myPos))) {
+                continue;
+            }
             List<EnemyAnt> inRange = null;
-            for (Tile delta : Registry.Instance.getOffsets(range2)) {
-                Tile possibleAnt = Registry.Instance.getTile(myPos, delta);
-                if (Registry.Instance.getIlk(possibleAnt) == Ilk.ENEMY_ANT) {
-                    _log.debug("COMBAT: candidates within %d (sq):  me [%s], enemy [%s]",
-                               range2, myPos, possibleAnt);
-                    EnemyAnt enemyAnt = Registry.Instance.getTeamedEnemyAnt(possibleAnt);
-                    // Map enemies by ally
-                    if (inRange == null) {
-                        if (enemiesInRange == null) {
-                            enemiesInRange = new HashMap<Tile, List<EnemyAnt>>();
-                        }
-                        inRange = enemiesInRange.get(myPos);
-                        if (inRange == null) {
-                            inRange = new ArrayList<EnemyAnt>(Registry.Instance.getEnemyAnts().size());
-                            enemiesInRange.put(myPos, inRange);
-                        }
-                    }
-                    inRange.add(enemyAnt);
-                    // Map allies by enemy
-                    if (alliesInRange == null) {
-                        alliesInRange = new HashMap<EnemyAnt, List<Tile>>();
+            _nearbyEnemies.clear();
+            _registry.queryWithin(myPos, range2, AntIndex.ALL_ENEMIES, _nearbyEnemies);
+            for (int i = 0; i < _nearbyEnemies.size(); i++) {
+                Tile possibleAnt = _registry.tileAt(_nearbyEnemies.get(i));
+                _log.debug("COMBAT: candidates within %d (sq):  me [%s], enemy [%s]",
+                           range2, myPos, possibleAnt);
+                EnemyAnt enemyAnt = _registry.getTeamedEnemyAnt(possibleAnt);
+                // Map enemies by ally
+                if (inRange == null) {
+                    if (enemiesInRange == null) {
+                        enemiesInRange = new HashMap<Tile, List<EnemyAnt>>();
                     }
-                    List<Tile> allies = alliesInRange.get(enemyAnt);
-                    if (allies == null) {
-                        allies = new ArrayList<Tile>(Registry.Instance.getMyAnts().size());
-                        alliesInRange.put(enemyAnt, allies);
+                    inRange = enemiesInRange.get(myPos);
+                    if (inRange == null) {
+                        inRange = new ArrayList<EnemyAnt>(_registry.getEnemyAnts().size());
+                        enemiesInRange.put(myPos, inRange);
                     }
-                    allies.add(myPos);
                 }
+                inRange.add(enemyAnt);
+                // Map allies by enemy
+                if (alliesInRange == null) {
+                    alliesInRange = new HashMap<EnemyAnt, List<Tile>>();
+                }
+                List<Tile> allies = alliesInRange.get(enemyAnt);
+                if (allies == null) {
+                    allies = new ArrayList<Tile>(_registry.getMyAnts().size());
+                    alliesInRange.put(enemyAnt, allies);
+                }
+                allies.add(myPos);
                 if (_timeManager.stepTimeOverrun()) {
                     timedOut = true;
                     break;
@@ -256,8 +305,8 @@ public class MyBot extends Bot {
                 timedOut = true;
                 break;
             }
-            Set<Ant> combatZoneAnts = new HashSet<Ant>(Registry.Instance.getMyAnts().size() +
-                                                       Registry.Instance.getEnemyAnts().size());
+            Set<Ant> combatZoneAnts = new HashSet<Ant>(_registry.getMyAnts().size() +
+                                                       _registry.getEnemyAnts().size());
             Tile me = enemiesInRange.keySet().iterator().next();
             if (combatZoneAnts.add(new Ant(me))) {
                 timedOut = addNearEnemies(combatZoneAnts, enemiesInRange, alliesInRange, me);
@@ -265,7 +314,7 @@ public class MyBot extends Bot {
                     break;
                 }
             }
-            CombatZone zone = new CombatZone(combatZoneAnts);
+            CombatZone zone = new CombatZone(getContext(), combatZoneAnts);
             _combatZones.add(zone);
         }
         _log.info("Took %d ms to create %d combat zones (timed out?: %b)",
@@ -336,23 +385,115 @@ public class MyBot extends Bot {
 
     }
 
+    // Ants with no target close by head for an enemy hill, or failing that along a flow field;
+    // the rest follow influence targets
+    private boolean moveUntargeted(Tile ant) {
+        if (!hasLocalTarget(ant) && (moveTowardsEnemyHill(ant) || moveAlongFlowField(ant))) {
+            return true;
+        }
+        for (Iterator<Tile> moves = _influence.getTargets(ant); moves.hasNext(); ) {
+            if (moveToLocation(ant, moves.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether a target of some fallback class is near enough for influence to steer the ant
+    private boolean hasLocalTarget(Tile ant) {
+        for (TargetingPolicy.Type type : FLOW_FIELD_TYPES) {
+            int distance = _flowFields.getDistance(type, ant);
+            if (distance != FlowField.UNREACHABLE && distance <= LOCAL_TARGET_DISTANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean moveInDirection(Tile antLoc, Aim direction) {
         // Track all moves, prevent collisions
-        Tile newLoc = Registry.Instance.getTile(antLoc, direction);
-        if (Registry.Instance.getIlk(newLoc).isUnoccupied() && !_destinations.contains(newLoc)) {
-            Registry.Instance.issueOrder(antLoc, direction);
-            _destinations.add(newLoc);
+        Tile newLoc = _registry.getTile(antLoc, direction);
+        final int from = _registry.getCell(antLoc);
+        final int to = _registry.getCell(newLoc);
+        Ilk ilk = _registry.getIlk(newLoc);
+        // One of my ants is only in the way until it moves off
+        boolean vacated = ilk == Ilk.MY_ANT && _toMove.contains(newLoc);
+        if ((ilk.isUnoccupied() || vacated) && isAvailable(to, from)) {
+            _registry.issueOrder(antLoc, direction);
+            _reservations.reserve(to, 1, from);
             _toMove.add(antLoc);
             _untargetedAnts.remove(antLoc);
+            _blocked.remove(antLoc);
+            _deferred.remove(antLoc);
             _log.debug("Moving ant at [%s] %s to [%s]", antLoc, direction, newLoc);
             return true;
         } else {
+            if (ilk == Ilk.MY_ANT && _untargetedAnts.contains(newLoc)) {
+                _deferred.add(antLoc);
+            } else if (ilk.isPassable()) {
+                _blocked.add(antLoc);
+            }
+            return false;
+        }
+    }
+
+    // Whether an ant at 'from' may move into 'to' this turn
+    private boolean isAvailable(int to, int from) {
+        int owner = _reservations.getOwner(to, 1);
+        if (owner == ReservationTable.FREE || owner == from) {
+            return true;
+        }
+        if (owner == ReservationTable.BLOCKED || !_reservations.isInherited(to, 1)) {
+            return false;
+        }
+        // Planned on an earlier turn: held only while the ant it was planned for has yet to move
+        return !_untargetedAnts.contains(_registry.tileAt(owner));
+    }
+
+    // Reserves the cells an ant will pass through if it keeps following a flow field
+    private void reserveAhead(int cell, FlowField field) {
+        for (int step = 2; step <= _reservations.getHorizon(); step++) {
+            Aim direction = field.getDirection(cell);
+            if (direction == null) {
+                break;
+            }
+            int next = _registry.neighbor(cell, direction);
+            if (_reservations.getOwner(next, step) != ReservationTable.FREE) {
+                break;
+            }
+            _reservations.reserve(next, step, cell);
+            cell = next;
+        }
+    }
+
+    // Step along the hierarchical pathfinder's route to the nearest enemy hill
+    private boolean moveTowardsEnemyHill(Tile antLoc) {
+        int distance = _hillRoutes.route(_registry.getCell(antLoc));
+        return distance > 0 && moveInDirection(antLoc, _hillRoutes.getDirection());
+    }
+
+    // Step towards whichever target is nearest across all the fallback classes
+    private boolean moveAlongFlowField(Tile antLoc) {
+        Aim best = null;
+        FlowField bestField = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (TargetingPolicy.Type type : FLOW_FIELD_TYPES) {
+            int distance = _flowFields.getDistance(type, antLoc);
+            if (distance > 0 && distance < bestDistance) {
+                best = _flowFields.getDirection(type, antLoc);
+                bestField = _flowFields.get(type);
+                bestDistance = distance;
+            }
+        }
+        if (best == null || !moveInDirection(antLoc, best)) {
             return false;
         }
+        reserveAhead(_registry.getCell(_registry.getTile(antLoc, best)), bestField);
+        return true;
     }
 
     private boolean moveToLocation(Tile antLoc, Tile destLoc) {
-        List<Aim> directions = Registry.Instance.getDirections(antLoc, destLoc);
+        List<Aim> directions = _registry.getDirections(antLoc, destLoc);
         for (Aim direction : directions) {
             if (moveInDirection(antLoc, direction)) {
                 return true;
@@ -0,0 +1,114 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Cells along a route, held as a window onto an int array of cell ids.  Indexing is O(1), and
+ * a suffix is just a narrower window onto the same array, so routes that share a tail can share
+ * storage.  Tiles are only created on demand.
+ *
+ * The underlying array mustn't be modified once a route wraps it.
+ */
+public final class PackedRoute {
+
+    private final Registry _registry;
+    private final int[] _cells;
+    private final int _offset;
+    private final int _length;
+
+    /**
+     * @param registry game state
+     * @param cells    cell ids along the route
+     */
+    public PackedRoute(Registry registry, int[] cells) {
+        this(registry, cells, 0, cells.length);
+    }
+
+    private PackedRoute(Registry registry, int[] cells, int offset, int length) {
+        _registry = registry;
+        _cells = cells;
+        _offset = offset;
+        _length = length;
+    }
+
+    /**
+     * @return number of cells on the route
+     */
+    public int length() {
+        return _length;
+    }
+
+    /**
+     * @param i index along the route
+     * @return cell id
+     */
+    public int cell(int i) {
+        if (i < 0 || i >= _length) {
+            throw new IndexOutOfBoundsException(String.format("Index %d of route of length %d", i, _length));
+        }
+        return _cells[_offset + i];
+    }
+
+    /**
+     * @param i index along the route
+     * @return location on the game map
+     */
+    public Tile tile(int i) {
+        return _registry.tileAt(cell(i));
+    }
+
+    /**
+     * @param cell cell id
+     * @return index of the cell along the route, or -1 if it isn't on the route
+     */
+    public int indexOf(int cell) {
+        for (int i = 0; i < _length; i++) {
+            if (_cells[_offset + i] == cell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param from index of the first cell to keep
+     * @return the route from <code>from</code> onwards, sharing this route's storage
+     */
+    public PackedRoute suffix(int from) {
+        if (from < 0 || from > _length) {
+            throw new IndexOutOfBoundsException(String.format("Suffix from %d of route of length %d", from, _length));
+        }
+        return new PackedRoute(_registry, _cells, _offset + from, _length - from);
+    }
+
+    /**
+     * @return lazy view of the route's tiles
+     */
+    public Iterable<Tile> tiles() {
+        return new Iterable<Tile>() {
+            @Override
+            public Iterator<Tile> iterator() {
+                return new Iterator<Tile>() {
+                    private int _next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return _next < _length;
+                    }
+
+                    @Override
+                    public Tile next() {
+                        if (_next >= _length) {
+                            throw new NoSuchElementException();
+                        }
+                        return tile(_next++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * A* search over cell ids with primitive per-cell state.
+ *
+ * Open nodes live in a {@link CellHeap} keyed by f-score, so a shorter path can decrease a
+ * cell's key in place.  Per-cell g-scores, parents and open/closed state are only valid for
+ * cells stamped with the current search generation, so starting a new search costs O(1) rather
+ * than clearing arrays the size of the map.
+ *
+ * An engine isn't thread-safe; each thread searching the same map needs its own instance.
+ */
+public class PathEngine {
+
+    private static final byte OPEN = 1;
+    private static final byte CLOSED = 2;
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private final Registry _registry;
+    private final Landmarks _landmarks;
+    private final int[] _goalDistances;
+    private final int _rows;
+    private final int _cols;
+
+    // Per-cell search state, valid where _stamp[cell] == _generation
+    private final int[] _stamp;
+    private final byte[] _state;
+    private final int[] _g;
+    private final int[] _parent;
+    private int _generation = 0;
+
+    // Open cells ordered by f-score
+    private final CellHeap _open;
+
+    // Last path found, excluding the start cell and including the end cell
+    private int[] _path = new int[64];
+    private int _pathLength = 0;
+    private int _expansions = 0;
+
+    public PathEngine(Registry registry) {
+        this(registry, null);
+    }
+
+    /**
+     * @param registry  game state
+     * @param landmarks landmark tables to tighten the heuristic with, or null for plain Manhattan
+     *                  distance
+     */
+    public PathEngine(Registry registry, Landmarks landmarks) {
+        _registry = registry;
+        _landmarks = landmarks;
+        _goalDistances = (landmarks == null) ? null : new int[landmarks.getCount()];
+        _rows = registry.getRows();
+        _cols = registry.getCols();
+        final int cells = registry.getCellCount();
+        _stamp = new int[cells];
+        _state = new byte[cells];
+        _g = new int[cells];
+        _parent = new int[cells];
+        _open = new CellHeap(cells);
+    }
+
+    /**
+     * Finds a shortest route between two cells.  Intermediate cells must be passable; the end
+     * cell needn't be.
+     *
+     * @param start start cell
+     * @param end   end cell
+     * @return length of the route found, or -1 if the end is unreachable
+     */
+    public int findPath(final int start, final int end) {
+        final Registry r = _registry;
+        nextGeneration();
+        _open.clear();
+        _pathLength = 0;
+        _expansions = 0;
+        if (_landmarks != null) {
+            _landmarks.loadGoal(end, _goalDistances);
+        }
+        visit(start, 0, -1, end);
+        while (!_open.isEmpty()) {
+            final int cell = _open.poll();
+            if (cell == end) {
+                reconstructPath(start, end);
+                return _pathLength;
+            }
+            _state[cell] = CLOSED;
+            _expansions++;
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (isWalkable(neighbor, end)) {
+                    relax(neighbor, _g[cell] + 1, cell, end);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void relax(int cell, int g, int parent, int end) {
+        if (_stamp[cell] != _generation) {
+            visit(cell, g, parent, end);
+        } else if (_state[cell] == OPEN && g < _g[cell]) {
+            _g[cell] = g;
+            _parent[cell] = parent;
+            _open.decreaseKey(cell, g + heuristic(cell, end));
+        }
+    }
+
+    private boolean isWalkable(int cell, int end) {
+        return _registry.isPassable(cell) || cell == end;
+    }
+
+    /**
+     * @return length of the last route found
+     */
+    public int getPathLength() {
+        return _pathLength;
+    }
+
+    /**
+     * @param i step along the last route found, from 0 (the first move) to
+     *          <code>getPathLength() - 1</code> (the end cell)
+     * @return cell at that step
+     */
+    public int getPathCell(int i) {
+        return _path[i];
+    }
+
+    /**
+     * @return number of cells expanded by the last search
+     */
+    public int getExpansions() {
+        return _expansions;
+    }
+
+    /**
+     * Lower bound on the number of moves between two cells:  dX + dY on the torus, or the
+     * landmark bound where that's tighter.
+     */
+    protected int heuristic(final int cell, final int goal) {
+        int rowDelta = Math.abs(cell / _cols - goal / _cols);
+        int colDelta = Math.abs(cell % _cols - goal % _cols);
+        rowDelta = Math.min(rowDelta, _rows - rowDelta);
+        colDelta = Math.min(colDelta, _cols - colDelta);
+        final int manhattan = rowDelta + colDelta;
+        if (_landmarks == null) {
+            return manhattan;
+        }
+        return Math.max(manhattan, _landmarks.lowerBound(cell, _goalDistances));
+    }
+
+    private void nextGeneration() {
+        if (++_generation == 0) {
+            // Wrapped around; stale stamps could now collide with live ones
+            Arrays.fill(_stamp, 0);
+            _generation = 1;
+        }
+    }
+
+    private void visit(int cell, int g, int parent, int end) {
+        _stamp[cell] = _generation;
+        _state[cell] = OPEN;
+        _g[cell] = g;
+        _parent[cell] = parent;
+        _open.add(cell, g + heuristic(cell, end));
+    }
+
+    private void reconstructPath(int start, int end) {
+        final int length = _g[end];
+        if (_path.length < length) {
+            _path = new int[Math.max(length, _path.length * 2)];
+        }
+        int i = length;
+        for (int cell = end; cell != start; cell = _parent[cell]) {
+            _path[--i] = cell;
+        }
+        _pathLength = length;
+    }
+}
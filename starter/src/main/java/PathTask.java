@@ -0,0 +1,221 @@
+import java.util.Arrays;
+
+/**
+ * An A* search that runs a bounded number of expansions at a time, so an expensive route can be
+ * worked on across several turns instead of being abandoned when a step runs out of time.
+ *
+ * The open and closed sets survive between calls to {@link #step}.  Discovering water only
+ * matters to a suspended search if it lands on a cell the search has already reached; in that
+ * case the search starts over.  Search state is taken on the first step and given back once the
+ * task finishes; tasks queued with {@link PathTasks} share a pool of it, so a long queue doesn't
+ * hold (or churn through) a full set of per-cell arrays per task.  The heuristic is plain
+ * Manhattan distance, since landmark tables may be refreshed while the task is suspended.
+ */
+public class PathTask {
+
+    public static enum Status {
+        RUNNING,
+        DONE,
+        NO_ROUTE
+    }
+
+    private static final byte OPEN = 1;
+    private static final byte CLOSED = 2;
+
+    private static final Aim[] AIMS = Aim.values();
+
+    /**
+     * Per-cell state of one search, valid where stamped with the current generation.  The
+     * generation carries on from one search to the next, so handing the state to another task
+     * never needs the arrays cleared.
+     */
+    static final class SearchState {
+        final int[] stamp;
+        final byte[] state;
+        final int[] g;
+        final int[] parent;
+        final CellHeap open;
+        int generation = 0;
+
+        SearchState(int cells) {
+            stamp = new int[cells];
+            state = new byte[cells];
+            g = new int[cells];
+            parent = new int[cells];
+            open = new CellHeap(cells);
+        }
+    }
+
+    private final Registry _registry;
+    private final PathTasks _pool;
+    private final int _start;
+    private final int _end;
+    private Status _status = Status.RUNNING;
+    private int[] _route;
+    private int _expansions = 0;
+    private int _restarts = 0;
+
+    // Search state, null until the first step and after the task finishes
+    private SearchState _search;
+
+    /**
+     * @param registry game state
+     * @param start    start cell
+     * @param end      end cell; unlike the cells on the way, it needn't be passable
+     */
+    public PathTask(Registry registry, int start, int end) {
+        this(registry, start, end, null);
+    }
+
+    /**
+     * @param pool queue whose search state the task borrows, or null for state of its own
+     */
+    PathTask(Registry registry, int start, int end, PathTasks pool) {
+        _registry = registry;
+        _start = start;
+        _end = end;
+        _pool = pool;
+    }
+
+    /**
+     * Continues the search.
+     *
+     * @param maxExpansions most cells to expand before suspending
+     * @return true if the task has finished
+     */
+    public boolean step(int maxExpansions) {
+        if (_status != Status.RUNNING) {
+            return true;
+        }
+        if (_search == null) {
+            _search = (_pool != null) ? _pool.acquire() : new SearchState(_registry.getCellCount());
+            restart();
+        }
+        final Registry r = _registry;
+        final SearchState s = _search;
+        for (int expanded = 0; expanded < maxExpansions; expanded++) {
+            if (s.open.isEmpty()) {
+                finish(Status.NO_ROUTE);
+                return true;
+            }
+            final int cell = s.open.poll();
+            if (cell == _end) {
+                reconstructRoute();
+                finish(Status.DONE);
+                return true;
+            }
+            s.state[cell] = CLOSED;
+            _expansions++;
+            final int g = s.g[cell] + 1;
+            for (Aim aim : AIMS) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (neighbor != _end && !r.isPassable(neighbor)) {
+                    continue;
+                }
+                if (s.stamp[neighbor] != s.generation) {
+                    visit(neighbor, g, cell);
+                } else if (s.state[neighbor] == OPEN && g < s.g[neighbor]) {
+                    s.g[neighbor] = g;
+                    s.parent[neighbor] = cell;
+                    s.open.decreaseKey(neighbor, g + heuristic(neighbor));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restarts a suspended search if the new water lands on a cell it has reached.
+     *
+     * @param cell newly discovered water cell
+     * @return true if the search was restarted
+     */
+    boolean waterDiscovered(int cell) {
+        if (_status == Status.RUNNING && _search != null && _search.stamp[cell] == _search.generation) {
+            restart();
+            _restarts++;
+            return true;
+        }
+        return false;
+    }
+
+    private void restart() {
+        final SearchState s = _search;
+        if (++s.generation == 0) {
+            Arrays.fill(s.stamp, 0);
+            s.generation = 1;
+        }
+        s.open.clear();
+        visit(_start, 0, -1);
+    }
+
+    private void visit(int cell, int g, int parent) {
+        final SearchState s = _search;
+        s.stamp[cell] = s.generation;
+        s.state[cell] = OPEN;
+        s.g[cell] = g;
+        s.parent[cell] = parent;
+        s.open.add(cell, g + heuristic(cell));
+    }
+
+    private int heuristic(int cell) {
+        final int cols = _registry.getCols(), rows = _registry.getRows();
+        final int dr = Math.abs(cell / cols - _end / cols);
+        final int dc = Math.abs(cell % cols - _end % cols);
+        return Math.min(dr, rows - dr) + Math.min(dc, cols - dc);
+    }
+
+    private void reconstructRoute() {
+        _route = new int[_search.g[_end]];
+        int i = _route.length;
+        for (int cell = _end; cell != _start; cell = _search.parent[cell]) {
+            _route[--i] = cell;
+        }
+    }
+
+    private void finish(Status status) {
+        _status = status;
+        if (_pool != null) {
+            _pool.release(_search);
+        }
+        _search = null;
+    }
+
+    public int getStart() {
+        return _start;
+    }
+
+    public int getEnd() {
+        return _end;
+    }
+
+    public Status getStatus() {
+        return _status;
+    }
+
+    public boolean isFinished() {
+        return _status != Status.RUNNING;
+    }
+
+    /**
+     * @return cells after the start up to and including the end, or null unless the task is
+     *         {@link Status#DONE}
+     */
+    public int[] getRoute() {
+        return _route;
+    }
+
+    /**
+     * @return cells expanded so far, across restarts
+     */
+    public int getExpansions() {
+        return _expansions;
+    }
+
+    /**
+     * @return number of times new water forced the search to start over
+     */
+    public int getRestarts() {
+        return _restarts;
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.LinkedList;
+
+/**
+ * Queue of {@link PathTask}s worked on in whatever time a turn has left over.  Tasks run one at
+ * a time, oldest first, so only the task at the head of the queue holds search state, borrowed
+ * from a small pool kept here (a second set is only needed when a task is finished out of turn
+ * while the head is suspended).  Finished routes are handed to the {@link RouteCache}, where any
+ * later {@link AStarRoute} between the same cells, or from a cell along the way, picks them up;
+ * {@link DefenseZone}s queue routes out to their strongpoints this way.
+ */
+public class PathTasks implements Registry.TerrainListener {
+
+    // Expansions between checks of the time manager
+    public static final int EXPANSIONS_PER_SLICE = 256;
+
+    private static final LogFacade _log = LogFacade.get(PathTasks.class);
+
+    private final Registry _registry;
+    private final RouteCache _routeCache;
+    private final LinkedList<PathTask> _pending = new LinkedList<PathTask>();
+    // Search state not held by any task
+    private final LinkedList<PathTask.SearchState> _spare = new LinkedList<PathTask.SearchState>();
+    private int _searchStates = 0;
+
+    public PathTasks(Registry registry, RouteCache routeCache) {
+        _registry = registry;
+        _routeCache = routeCache;
+    }
+
+    /**
+     * Queues a search.
+     *
+     * @param start start cell
+     * @param end   end cell
+     * @return the queued task
+     */
+    public PathTask submit(int start, int end) {
+        PathTask task = new PathTask(_registry, start, end, this);
+        _pending.add(task);
+        return task;
+    }
+
+    /**
+     * Works through the queue until it's empty or the current step runs out of time.
+     *
+     * @param manager time manager for the current step
+     * @return number of tasks finished
+     */
+    public int run(TimeManager manager) {
+        long start = System.currentTimeMillis();
+        int finished = 0;
+        while (!_pending.isEmpty() && !manager.stepTimeOverrun()) {
+            PathTask task = _pending.getFirst();
+            if (task.step(EXPANSIONS_PER_SLICE)) {
+                _pending.removeFirst();
+                complete(task);
+                finished++;
+            }
+        }
+        if (finished > 0 || !_pending.isEmpty()) {
+            _log.debug("Finished %d path task(s) in %d ms, %d pending", finished,
+                       System.currentTimeMillis() - start, _pending.size());
+        }
+        return finished;
+    }
+
+    /**
+     * Finishes a task right away, whether or not it's at the head of the queue.
+     *
+     * @param task queued or finished task
+     */
+    public void finish(PathTask task) {
+        if (!task.isFinished()) {
+            task.step(Integer.MAX_VALUE);
+            _pending.remove(task);
+            complete(task);
+        }
+    }
+
+    PathTask.SearchState acquire() {
+        if (_spare.isEmpty()) {
+            _searchStates++;
+            return new PathTask.SearchState(_registry.getCellCount());
+        }
+        return _spare.removeFirst();
+    }
+
+    void release(PathTask.SearchState search) {
+        _spare.addFirst(search);
+    }
+
+    /**
+     * @return number of sets of search state allocated so far
+     */
+    public int getSearchStateCount() {
+        return _searchStates;
+    }
+
+    private void complete(PathTask task) {
+        if (task.getStatus() == PathTask.Status.DONE) {
+            _routeCache.put(task.getStart(), task.getEnd(), task.getRoute());
+        } else {
+            _routeCache.put(task.getStart(), task.getEnd(), null);
+        }
+    }
+
+    /**
+     * @param cell newly discovered water cell
+     */
+    @Override
+    public void waterDiscovered(int cell) {
+        for (PathTask task : _pending) {
+            if (task.waterDiscovered(cell)) {
+                _log.debug("Water at [%s] restarted a path task", _registry.tileAt(cell));
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return _pending.size();
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -11,6 +12,18 @@ import java.util.Set;
  * Holds all game data and current game state.
  */
 public class Registry {
+    /**
+     * Notified as the known terrain changes.
+     */
+    public interface TerrainListener {
+        /**
+         * Called when a cell is first seen to be water.
+         *
+         * @param cell cell id
+         */
+        void waterDiscovered(int cell);
+    }
+
     /**
      * Maximum map size.
      */
@@ -32,11 +45,83 @@ public class Registry {
 
     private final int spawnRadius2;
 
-    private final boolean visible[][];
+    private final int cells;
+
+    // Number of my ants that can see each cell
+    private final int visible[];
+
+    // Cells holding an ant whose view disc is currently counted in 'visible'
+    private final boolean visionSources[];
+
+    private final CellList visionSourceList = new CellList();
+
+    // Cells of this turn's ants, marked with the current vision generation
+    private final int antMarks[];
+
+    private int visionGeneration = 0;
+
+    // Moves ordered since the last vision update, packed as (cell << 2) | Aim.ordinal()
+    private final CellList orderedMoves = new CellList();
 
     private long turnStartTime;
 
-    private final Ilk map[][];
+    private int turn = 0;
+
+    /**
+     * Row/column stride of the unseen tile sample kept in {@link MapMemory}.
+     */
+    public static final int UNSEEN_TILE_SAMPLING_RATE = 5;
+
+    private final MapMemory memory;
+
+    private final AntIndex antIndex;
+
+    private final BitLayer waterLayer;
+
+    private final BitLayer foodLayer;
+
+    private final BitLayer myAntLayer;
+
+    private final BitLayer enemyAntLayer;
+
+    // Indexed by team; slot 0 (my team) is unused
+    private BitLayer enemyTeamLayers[] = new BitLayer[0];
+
+    private final BitLayer visibleLayer;
+
+    private final byte map[];
+
+    // Cells whose ilk changed since clearChangedCells(), each listed once per generation
+    private final CellList changedCells = new CellList();
+
+    private final int changedMarks[];
+
+    private int changeGeneration = 1;
+
+    // Cells first discovered to be water since clearChangedCells()
+    private final CellList newWater = new CellList();
+
+    private int waterCount = 0;
+
+    private final List<TerrainListener> terrainListeners = new ArrayList<TerrainListener>();
+
+    private final CellList deadAnts = new CellList();
+
+    // Canonical tile instance for every cell
+    private final Tile tiles[];
+
+    // Wrapped neighbor cell ids, four per cell, indexed by (cell << 2) + Aim.ordinal()
+    private final int neighbors[];
+
+    private static final Ilk[] ILKS = Ilk.values();
+
+    private static final Aim[] AIMS = Aim.values();
+
+    private static final byte WATER_ILK = (byte) Ilk.WATER.ordinal();
+
+    private static final byte LAND_ILK = (byte) Ilk.LAND.ordinal();
+
+    private static final byte DEAD_ILK = (byte) Ilk.DEAD.ordinal();
 
     private final Set<Tile> myAnts = new HashSet<Tile>();
 
@@ -52,19 +137,26 @@ public class Registry {
 
     private final Set<Order> orders = new HashSet<Order>();
 
-    private final Map<Integer, Collection<Tile>> _offsets = new HashMap<Integer, Collection<Tile>>();
+    private final Map<Integer, Stencil> _stencils = new HashMap<Integer, Stencil>();
 
-    public static Registry Instance;
+    private final Stencil viewStencil;
 
-    public static void initialize(int loadTime, int turnTime, int rows, int cols, int turns, int viewRadius2,
-                                  int attackRadius2, int spawnRadius2) {
-        Instance = new Registry(loadTime, turnTime, rows, cols, turns, viewRadius2, attackRadius2, spawnRadius2);
-    }
+    private final Stencil attackStencil;
+
+    private final Stencil spawnStencil;
+
+    private final int visionBuffer[];
+
+    // Published once per turn; read by worker threads without locking
+    private volatile WorldSnapshot snapshot;
 
+    private final PrintStream output;
 
     /**
-     * Creates new {@link Registry} object.
+     * Creates new {@link Registry} object.  Use {@link GameContext#initialize} rather than calling
+     * this directly.
      *
+     * @param output        stream that receives issued orders
      * @param loadTime      timeout for initializing and setting up the bot on turn 0
      * @param turnTime      timeout for a single game turn, starting with turn 1
      * @param rows          game map height
@@ -74,8 +166,9 @@ public class Registry {
      * @param attackRadius2 squared attack radius of each ant
      * @param spawnRadius2  squared spawn radius of each ant
      */
-    private Registry(int loadTime, int turnTime, int rows, int cols, int turns, int viewRadius2,
-                     int attackRadius2, int spawnRadius2) {
+    Registry(PrintStream output, int loadTime, int turnTime, int rows, int cols, int turns, int viewRadius2,
+             int attackRadius2, int spawnRadius2) {
+        this.output = output;
         this.loadTime = loadTime;
         this.turnTime = turnTime;
         this.rows = rows;
@@ -84,32 +177,72 @@ public class Registry {
         this.viewRadius2 = viewRadius2;
         this.attackRadius2 = attackRadius2;
         this.spawnRadius2 = spawnRadius2;
-        map = new Ilk[rows][cols];
-        for (Ilk[] row : map) {
-            Arrays.fill(row, Ilk.LAND);
+        cells = rows * cols;
+        map = new byte[cells];
+        Arrays.fill(map, LAND_ILK);
+        visible = new int[cells];
+        visionSources = new boolean[cells];
+        antMarks = new int[cells];
+        changedMarks = new int[cells];
+        tiles = new Tile[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            tiles[cell] = new Tile(cell / cols, cell % cols);
         }
-        visible = new boolean[rows][cols];
-        for (boolean[] row : visible) {
-            Arrays.fill(row, false);
+        neighbors = new int[cells * 4];
+        final Aim[] aims = Aim.values();
+        for (int cell = 0; cell < cells; cell++) {
+            for (Aim aim : aims) {
+                neighbors[(cell << 2) + aim.ordinal()] = offset(cell, aim.getRowDelta(), aim.getColDelta());
+            }
         }
+        viewStencil = getStencil(viewRadius2);
+        attackStencil = getStencil(attackRadius2);
+        spawnStencil = getStencil(spawnRadius2);
+        // Large enough for the full view disc, and therefore for any of its edges
+        visionBuffer = new int[viewStencil.getSize()];
+        memory = new MapMemory(this, UNSEEN_TILE_SAMPLING_RATE);
+        antIndex = new AntIndex(rows, cols, AntIndex.DEFAULT_BUCKET_SIZE);
+        waterLayer = new BitLayer(rows, cols);
+        foodLayer = new BitLayer(rows, cols);
+        myAntLayer = new BitLayer(rows, cols);
+        enemyAntLayer = new BitLayer(rows, cols);
+        visibleLayer = new BitLayer(rows, cols);
     }
 
-    public Collection<Tile> getOffsets(Integer distance2) {
-        Collection<Tile> offsets = _offsets.get(distance2);
-        if (offsets == null) {
-            offsets = new HashSet<Tile>();
-            int mx = (int) Math.sqrt(distance2);
-            for (int row = -mx; row <= mx; ++row) {
-                for (int col = -mx; col <= mx; ++col) {
-                    int d = row * row + col * col;
-                    if (d <= distance2) {
-                        offsets.add(new Tile(row, col));
-                    }
-                }
-            }
-            _offsets.put(distance2, offsets);
+    /**
+     * Returns the stencil of cell offsets within the specified squared radius.
+     *
+     * @param radius2 squared radius
+     * @return cached stencil for <code>radius2</code>
+     */
+    public Stencil getStencil(int radius2) {
+        Stencil stencil = _stencils.get(radius2);
+        if (stencil == null) {
+            stencil = new Stencil(radius2, rows, cols);
+            _stencils.put(radius2, stencil);
         }
-        return offsets;
+        return stencil;
+    }
+
+    /**
+     * @return stencil covering the view radius of an ant
+     */
+    public Stencil getViewStencil() {
+        return viewStencil;
+    }
+
+    /**
+     * @return stencil covering the attack radius of an ant
+     */
+    public Stencil getAttackStencil() {
+        return attackStencil;
+    }
+
+    /**
+     * @return stencil covering the spawn radius of an ant
+     */
+    public Stencil getSpawnStencil() {
+        return spawnStencil;
     }
 
     /**
@@ -184,6 +317,78 @@ public class Registry {
         return spawnRadius2;
     }
 
+    /**
+     * Returns number of cells on the game map.  Cell ids run from <code>0</code> to
+     * <code>rows * cols - 1</code>, in row-major order.
+     *
+     * @return number of cells on the game map
+     */
+    public int getCellCount() {
+        return cells;
+    }
+
+    /**
+     * Returns the cell id of the specified location.
+     *
+     * @param row row index
+     * @param col column index
+     * @return cell id of <code>row</code>, <code>col</code>
+     */
+    public final int getCell(final int row, final int col) {
+        return row * cols + col;
+    }
+
+    /**
+     * Returns the cell id of the specified location.
+     *
+     * @param tile location on the game map
+     * @return cell id of <code>tile</code>
+     */
+    public final int getCell(Tile tile) {
+        return tile.getRow() * cols + tile.getCol();
+    }
+
+    /**
+     * Returns the row index of the specified cell.
+     *
+     * @param cell cell id
+     * @return row index of <code>cell</code>
+     */
+    public final int getRow(final int cell) {
+        return cell / cols;
+    }
+
+    /**
+     * Returns the column index of the specified cell.
+     *
+     * @param cell cell id
+     * @return column index of <code>cell</code>
+     */
+    public final int getCol(final int cell) {
+        return cell % cols;
+    }
+
+    /**
+     * Returns the canonical tile instance for the specified location.
+     *
+     * @param row row index
+     * @param col column index
+     * @return shared tile at <code>row</code>, <code>col</code>
+     */
+    public final Tile tileAt(final int row, final int col) {
+        return tiles[row * cols + col];
+    }
+
+    /**
+     * Returns the canonical tile instance for the specified cell.
+     *
+     * @param cell cell id
+     * @return shared tile at <code>cell</code>
+     */
+    public final Tile tileAt(final int cell) {
+        return tiles[cell];
+    }
+
     /**
      * Sets turn start time.
      *
@@ -193,6 +398,114 @@ public class Registry {
         this.turnStartTime = turnStartTime;
     }
 
+    /**
+     * Returns turn start time.
+     *
+     * @return turn start time
+     */
+    public long getTurnStartTime() {
+        return turnStartTime;
+    }
+
+    /**
+     * Advances the turn counter.  Call once per turn, before updating the game state.
+     */
+    public void nextTurn() {
+        turn++;
+        memory.startTurn(turn);
+    }
+
+    /**
+     * Returns the current turn, starting with turn 1 for the first game state update.
+     *
+     * @return the current turn
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns persistent knowledge of the game map.
+     *
+     * @return map memory
+     */
+    public MapMemory getMemory() {
+        return memory;
+    }
+
+    /**
+     * Returns the spatial index of ant locations, kept in step with the ilk map.
+     *
+     * @return ant index
+     */
+    public AntIndex getAntIndex() {
+        return antIndex;
+    }
+
+    /**
+     * @return bit layer of known water cells
+     */
+    public BitLayer getWaterLayer() {
+        return waterLayer;
+    }
+
+    /**
+     * @return bit layer of food cells
+     */
+    public BitLayer getFoodLayer() {
+        return foodLayer;
+    }
+
+    /**
+     * @return bit layer of my ants' cells
+     */
+    public BitLayer getMyAntLayer() {
+        return myAntLayer;
+    }
+
+    /**
+     * @return bit layer of every enemy ant's cell
+     */
+    public BitLayer getEnemyAntLayer() {
+        return enemyAntLayer;
+    }
+
+    /**
+     * Returns the bit layer of a single enemy team's ant cells.
+     *
+     * @param team enemy team, 1 or greater
+     * @return bit layer of <code>team</code>'s ants
+     */
+    public BitLayer getEnemyAntLayer(int team) {
+        if (team >= enemyTeamLayers.length) {
+            enemyTeamLayers = Arrays.copyOf(enemyTeamLayers, team + 1);
+        }
+        if (enemyTeamLayers[team] == null) {
+            enemyTeamLayers[team] = new BitLayer(rows, cols);
+        }
+        return enemyTeamLayers[team];
+    }
+
+    /**
+     * @return bit layer of cells visible this turn
+     */
+    public BitLayer getVisibleLayer() {
+        return visibleLayer;
+    }
+
+    /**
+     * Collects the ants of a team within a squared radius of a location.
+     *
+     * @param tile    location on the game map
+     * @param radius2 squared radius
+     * @param team    team to match (0 for my ants), or {@link AntIndex#ALL_ENEMIES}
+     * @param out     receives matching ant cell ids; not cleared first
+     * @return number of ants added to <code>out</code>
+     */
+    public int queryWithin(Tile tile, int radius2, int team, CellList out) {
+        return antIndex.queryWithin(getCell(tile), radius2, team, out);
+    }
+
     /**
      * Returns how much time the bot has still has to take its turn before timing out.
      *
@@ -209,11 +522,31 @@ public class Registry {
      * @return ilk at the <cod>tile</code>
      */
     public Ilk getIlk(Tile tile) {
-        return map[tile.getRow()][tile.getCol()];
+        return ILKS[map[getCell(tile)]];
     }
 
     public final Ilk getIlk(final int row, final int col) {
-        return map[row][col];
+        return ILKS[map[getCell(row, col)]];
+    }
+
+    /**
+     * Returns ilk of the specified cell.
+     *
+     * @param cell cell id
+     * @return ilk at <code>cell</code>
+     */
+    public final Ilk getIlk(final int cell) {
+        return ILKS[map[cell]];
+    }
+
+    /**
+     * Checks if the specified cell is passable, which means it is not a water tile.
+     *
+     * @param cell cell id
+     * @return <code>true</code> if <code>cell</code> is not a water tile
+     */
+    public final boolean isPassable(final int cell) {
+        return map[cell] != WATER_ILK;
     }
 
     /**
@@ -223,7 +556,63 @@ public class Registry {
      * @param ilk  ilk to be set at <code>tile</code>
      */
     public void setIlk(Tile tile, Ilk ilk) {
-        map[tile.getRow()][tile.getCol()] = ilk;
+        setIlk(getCell(tile), (byte) ilk.ordinal());
+    }
+
+    private void setIlk(int cell, byte ilk) {
+        final byte previous = map[cell];
+        if (previous != ilk) {
+            if (ilk == WATER_ILK) {
+                newWater.add(cell);
+                waterCount++;
+                for (TerrainListener listener : terrainListeners) {
+                    listener.waterDiscovered(cell);
+                }
+            }
+            if (changedMarks[cell] != changeGeneration) {
+                changedMarks[cell] = changeGeneration;
+                changedCells.add(cell);
+            }
+            map[cell] = ilk;
+            BitLayer layer = getLayer(previous);
+            if (layer != null) {
+                layer.clear(cell);
+            }
+            layer = getLayer(ilk);
+            if (layer != null) {
+                layer.set(cell);
+            }
+        }
+    }
+
+    private BitLayer getLayer(byte ilk) {
+        switch (ILKS[ilk]) {
+            case WATER:
+                return waterLayer;
+            case FOOD:
+                return foodLayer;
+            case MY_ANT:
+                return myAntLayer;
+            case ENEMY_ANT:
+                return enemyAntLayer;
+            default:
+                return null;
+        }
+    }
+
+    private void addAnt(int cell, int team) {
+        antIndex.add(cell, team);
+        if (team > 0) {
+            getEnemyAntLayer(team).set(cell);
+        }
+    }
+
+    private void removeAnt(int cell) {
+        final int team = antIndex.getTeam(cell);
+        if (team > 0) {
+            getEnemyAntLayer(team).clear(cell);
+        }
+        antIndex.remove(cell);
     }
 
     /**
@@ -234,8 +623,7 @@ public class Registry {
      * @return ilk at the location in <code>direction</code> from <cod>tile</code>
      */
     public Ilk getIlk(Tile tile, Aim direction) {
-        Tile newTile = getTile(tile, direction);
-        return map[newTile.getRow()][newTile.getCol()];
+        return ILKS[map[neighbor(getCell(tile), direction)]];
     }
 
     public Tile getTile(final Tile t, final Aim a, final int distance) {
@@ -258,7 +646,7 @@ public class Registry {
             rowDelta += rowDelta;
             colDelta += colDelta;
         }
-        return getTile(t, new Tile(rowDelta, colDelta));
+        return tiles[offset(getCell(t), rowDelta, colDelta)];
     }
 
     /**
@@ -269,19 +657,48 @@ public class Registry {
      * @return location in <code>direction</code> from <cod>tile</code>
      */
     public Tile getTile(Tile tile, Aim direction) {
-        return getTile(tile.getRow(), tile.getCol(), direction);
+        return tiles[neighbors[(getCell(tile) << 2) + direction.ordinal()]];
     }
 
     public Tile getTile(int row, int col, Aim direction) {
-        row = (row + direction.getRowDelta()) % rows;
-        if (row < 0) {
-            row += rows;
+        return tiles[neighbors[(getCell(row, col) << 2) + direction.ordinal()]];
+    }
+
+    /**
+     * Returns the cell in the specified direction from the specified cell.
+     *
+     * @param cell      cell id
+     * @param direction direction to look up
+     * @return cell id in <code>direction</code> from <code>cell</code>
+     */
+    public final int neighbor(final int cell, final Aim direction) {
+        return neighbors[(cell << 2) + direction.ordinal()];
+    }
+
+    /**
+     * Returns the cell with the specified offset from the specified cell.
+     *
+     * @param cell     cell id
+     * @param rowDelta row offset
+     * @param colDelta column offset
+     * @return cell id at the offset from <code>cell</code>
+     */
+    public final int offset(final int cell, final int rowDelta, final int colDelta) {
+        int row = cell / cols + rowDelta;
+        if (row < 0 || row >= rows) {
+            row %= rows;
+            if (row < 0) {
+                row += rows;
+            }
         }
-        col = (col + direction.getColDelta()) % cols;
-        if (col < 0) {
-            col += cols;
+        int col = cell % cols + colDelta;
+        if (col < 0 || col >= cols) {
+            col %= cols;
+            if (col < 0) {
+                col += cols;
+            }
         }
-        return new Tile(row, col);
+        return row * cols + col;
     }
 
     /**
@@ -292,15 +709,7 @@ public class Registry {
      * @return location with <code>offset</code> from <cod>tile</code>
      */
     public Tile getTile(Tile tile, Tile offset) {
-        int row = (tile.getRow() + offset.getRow()) % rows;
-        if (row < 0) {
-            row += rows;
-        }
-        int col = (tile.getCol() + offset.getCol()) % cols;
-        if (col < 0) {
-            col += cols;
-        }
-        return new Tile(row, col);
+        return tiles[offset(getCell(tile), offset.getRow(), offset.getCol())];
     }
 
     /**
@@ -372,17 +781,27 @@ public class Registry {
      * @return true if the location is visible
      */
     public boolean isVisible(Tile tile) {
-        return visible[tile.getRow()][tile.getCol()];
+        return visible[getCell(tile)] > 0;
     }
 
     public boolean isVisible(final int row, final int col) {
-        return visible[row][col];
+        return visible[getCell(row, col)] > 0;
+    }
+
+    /**
+     * Returns true if a cell is visible this turn
+     *
+     * @param cell cell id
+     * @return true if the cell is visible
+     */
+    public final boolean isVisible(final int cell) {
+        return visible[cell] > 0;
     }
 
     public boolean hasVisibleNeighbor(final int row, final int col) {
+        final int cell = getCell(row, col);
         for (Aim a : Aim.values()) {
-            Tile t = getTile(row, col, a);
-            if (visible[t.getRow()][t.getCol()]) {
+            if (visible[neighbor(cell, a)] > 0) {
                 return true;
             }
         }
@@ -457,7 +876,9 @@ public class Registry {
      */
     public void clearMyAnts() {
         for (Tile myAnt : myAnts) {
-            map[myAnt.getRow()][myAnt.getCol()] = Ilk.LAND;
+            final int cell = getCell(myAnt);
+            setIlk(cell, LAND_ILK);
+            removeAnt(cell);
         }
         myAnts.clear();
     }
@@ -467,7 +888,9 @@ public class Registry {
      */
     public void clearEnemyAnts() {
         for (Tile enemyAnt : enemyAnts.keySet()) {
-            map[enemyAnt.getRow()][enemyAnt.getCol()] = Ilk.LAND;
+            final int cell = getCell(enemyAnt);
+            setIlk(cell, LAND_ILK);
+            removeAnt(cell);
         }
         enemyAnts.clear();
         enemiesByTeams.clear();
@@ -478,7 +901,7 @@ public class Registry {
      */
     public void clearFood() {
         for (Tile food : foodTiles) {
-            map[food.getRow()][food.getCol()] = Ilk.LAND;
+            setIlk(getCell(food), LAND_ILK);
         }
         foodTiles.clear();
     }
@@ -501,35 +924,141 @@ public class Registry {
      * Clears game state information about dead ants locations.
      */
     public void clearDeadAnts() {
-        //currently we do not have list of dead ants, so iterate over all map
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                if (map[row][col] == Ilk.DEAD) {
-                    map[row][col] = Ilk.LAND;
-                }
+        for (int i = 0; i < deadAnts.size(); i++) {
+            final int cell = deadAnts.get(i);
+            if (map[cell] == DEAD_ILK) {
+                setIlk(cell, LAND_ILK);
             }
         }
+        deadAnts.clear();
+    }
+
+    /**
+     * Starts a new generation of change tracking.  Call before clearing and updating the game
+     * state for a new turn.
+     */
+    public void clearChangedCells() {
+        changedCells.clear();
+        newWater.clear();
+        changeGeneration++;
+    }
+
+    /**
+     * Returns cells whose ilk changed since the last {@link #clearChangedCells()}, including
+     * those reset by the <code>clear*</code> methods.
+     *
+     * @return changed cell ids, each listed once
+     */
+    public CellList getChangedCells() {
+        return changedCells;
+    }
+
+    /**
+     * Returns cells first seen to be water since the last {@link #clearChangedCells()}.
+     *
+     * @return newly discovered water cell ids
+     */
+    public CellList getNewWater() {
+        return newWater;
+    }
+
+    /**
+     * Registers a listener for terrain changes.
+     *
+     * @param listener listener to add
+     */
+    public void addTerrainListener(TerrainListener listener) {
+        terrainListeners.add(listener);
+    }
+
+    /**
+     * Returns the number of water cells discovered so far.  Water never disappears, so this only
+     * grows and can be used as a version number for the terrain.
+     *
+     * @return number of known water cells
+     */
+    public int getWaterCount() {
+        return waterCount;
     }
 
     /**
-     * Clears visible information
+     * Clears all visible information, forgetting every ant's contribution.  Not needed between
+     * turns -- {@link #setVision()} maintains vision incrementally.  Costs one view disc per
+     * counted ant rather than a scan of the whole map.
      */
     public void clearVision() {
-        for (int row = 0; row < rows; ++row) {
-            for (int col = 0; col < cols; ++col) {
-                visible[row][col] = false;
+        for (int i = 0; i < visionSourceList.size(); i++) {
+            final int cell = visionSourceList.get(i);
+            if (visionSources[cell]) {
+                stampVision(viewStencil, cell, -1);
+                visionSources[cell] = false;
             }
         }
+        visionSourceList.clear();
+        orderedMoves.clear();
     }
 
     /**
-     * Calculates visible information
+     * Calculates visible information.  Rather than re-stamping every ant's view disc, only
+     * ants that appeared, disappeared or moved since the last call change the per-cell
+     * visibility counts.  Ants that followed an order only apply the leading and trailing
+     * edges of their view disc.
      */
     public void setVision() {
+        final int generation = ++visionGeneration;
+        for (Tile antLoc : myAnts) {
+            antMarks[getCell(antLoc)] = generation;
+        }
+        // Ants that moved as ordered -- shift their view discs
+        for (int i = 0; i < orderedMoves.size(); i++) {
+            final int from = orderedMoves.get(i) >>> 2;
+            final Aim aim = AIMS[orderedMoves.get(i) & 3];
+            final int to = neighbors[(from << 2) + aim.ordinal()];
+            if (visionSources[from] && antMarks[from] != generation &&
+                !visionSources[to] && antMarks[to] == generation) {
+                stampVision(viewStencil.getTrailingEdge(aim), from, -1);
+                stampVision(viewStencil.getLeadingEdge(aim), from, 1);
+                visionSources[from] = false;
+                visionSources[to] = true;
+            }
+        }
+        orderedMoves.clear();
+        // Ants that are gone
+        for (int i = 0; i < visionSourceList.size(); i++) {
+            final int cell = visionSourceList.get(i);
+            if (visionSources[cell] && antMarks[cell] != generation) {
+                stampVision(viewStencil, cell, -1);
+                visionSources[cell] = false;
+            }
+        }
+        // Ants that are new
+        visionSourceList.clear();
         for (Tile antLoc : myAnts) {
-            for (Tile locOffset : getOffsets(getViewRadius2())) {
-                Tile newLoc = getTile(antLoc, locOffset);
-                visible[newLoc.getRow()][newLoc.getCol()] = true;
+            final int cell = getCell(antLoc);
+            if (!visionSources[cell]) {
+                stampVision(viewStencil, cell, 1);
+                visionSources[cell] = true;
+            }
+            visionSourceList.add(cell);
+        }
+        memory.visionUpdated();
+    }
+
+    private void stampVision(Stencil stencil, int center, int delta) {
+        final int covered = stencil.apply(center, visionBuffer);
+        if (delta > 0) {
+            for (int i = 0; i < covered; i++) {
+                if (visible[visionBuffer[i]]++ == 0) {
+                    visibleLayer.set(visionBuffer[i]);
+                    memory.sighted(visionBuffer[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < covered; i++) {
+                if (--visible[visionBuffer[i]] == 0) {
+                    visibleLayer.clear(visionBuffer[i]);
+                    memory.lost(visionBuffer[i]);
+                }
             }
         }
     }
@@ -545,15 +1074,25 @@ public class Registry {
     }
 
     public void update(Ilk ilk, Tile tile, Integer team) {
-        map[tile.getRow()][tile.getCol()] = ilk;
+        final int cell = getCell(tile);
+        // Only ever track canonical tiles
+        tile = tiles[cell];
+        setIlk(cell, (byte) ilk.ordinal());
+        removeAnt(cell);
         switch (ilk) {
+            case DEAD:
+                deadAnts.add(cell);
+                break;
             case FOOD:
                 foodTiles.add(tile);
+                memory.rememberFood(tile);
                 break;
             case MY_ANT:
                 myAnts.add(tile);
+                addAnt(cell, 0);
                 break;
             case ENEMY_ANT:
+                addAnt(cell, team);
                 EnemyAnt enemy = new EnemyAnt(tile, team);
                 enemyAnts.put(tile, enemy);
                 List<EnemyAnt> forTeam = enemiesByTeams.get(team);
@@ -573,13 +1112,36 @@ public class Registry {
      * @param tile  location on the game map to be updated
      */
     public void updateHills(int owner, Tile tile) {
+        tile = tiles[getCell(tile)];
         if (owner > 0) {
             enemyHills.add(tile);
+            memory.rememberEnemyHill(tile);
         } else {
             myHills.add(tile);
         }
     }
 
+    /**
+     * Publishes an immutable copy of the current game state.  Call once per turn, after vision
+     * has been updated and before any orders are issued.
+     *
+     * @return the published snapshot
+     */
+    public WorldSnapshot publishSnapshot() {
+        WorldSnapshot published = new WorldSnapshot(this, map, neighbors, tiles, visibleLayer);
+        snapshot = published;
+        return published;
+    }
+
+    /**
+     * Returns the most recently published snapshot.  Safe to call from any thread.
+     *
+     * @return latest snapshot, or null if none has been published yet
+     */
+    public WorldSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     /**
      * Issues an order by sending it to the system output.  This
      * also updates the ilk map, so that future checks for
@@ -591,7 +1153,8 @@ public class Registry {
     public void issueOrder(Tile myAnt, Aim direction) {
         Order order = new Order(myAnt, direction);
         orders.add(order);
-        System.out.println(order);
+        orderedMoves.add((getCell(myAnt) << 2) | direction.ordinal());
+        output.println(order);
         update(Ilk.LAND, myAnt, null);
         update(Ilk.MY_ANT, getTile(myAnt, direction), null);
     }
@@ -1,5 +1,5 @@
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -16,17 +16,22 @@ public class RepulsionPolicy {
     // Mutiplier used to expand the radius of repulsion to come up with
     // egress route targets.
     private static final float REPULSION_RADIUS_MULTIPLIER = 1.5f;
+    // Multiplier on the distance out to the strongpoints beyond which an ant is considered
+    // unable to reach one
+    private static final float MAXIMUM_EGRESS_MULTIPLIER = 4.0f;
     private static final LogFacade _log = LogFacade.get(RepulsionPolicy.class);
 
+    private final GameContext _context;
     private final Tile _epicenter;
     private final int _radiusOfRepulsion;
     private final DefenseZone _defenseZone;
-    private int _sampleOffset = 0;
+    private DistanceTable _distances;
 
-    public RepulsionPolicy(Tile epicenter, int radiusOfRepulsion) {
+    public RepulsionPolicy(GameContext context, Tile epicenter, int radiusOfRepulsion) {
+        _context = context;
         _epicenter = epicenter;
-        _radiusOfRepulsion = Math.min(radiusOfRepulsion, Circumference.getMaximumRadius());
-        _defenseZone = new DefenseZone(epicenter,  radiusOfRepulsion+1);
+        _radiusOfRepulsion = Math.min(radiusOfRepulsion, context.getMaximumCircumferenceRadius());
+        _defenseZone = new DefenseZone(context, epicenter,  radiusOfRepulsion+1);
     }
 
     public Tile getEpicenter() {
@@ -37,61 +42,144 @@ public class RepulsionPolicy {
         return _defenseZone;
     }
 
+    /**
+     * Moves the ants within the radius of repulsion out towards the defense zone's strongpoints.
+     * Distances from every such ant to every strongpoint, and each ant's first move, come from
+     * one {@link DistanceTable}, and ants are matched to distinct strongpoints at the least total
+     * distance.  Ants left over once every strongpoint is taken head for their nearest one that
+     * isn't a single-file chokepoint, if any.  A full route is only found for an ant whose move
+     * takes it out of the radius short of its strongpoint, to lay breadcrumbs for the rest of the
+     * way.
+     *
+     * @param untargeted ants not yet given a move this turn
+     * @param manager    time manager for the current step
+     * @param handler    carries out the moves
+     */
     public void evacuate(Set<Tile> untargeted, TimeManager manager, MovementHandler handler) {
         if (untargeted.size() == 0) {
             // Nothing to evacuate
             return;
         }
-        // Only evacuate those ants within the radius of repulsion
-        Set<Tile> toEvacuate = new HashSet<Tile>();
+        final Registry r = _context.getRegistry();
+        // Only evacuate those ants within the radius of repulsion, walking where the epicenter is
+        // one of my hills
+        final HillDistanceOracle hillDistances = _context.getHillDistances();
+        final boolean walking = hillDistances.tracks(_epicenter);
+        List<Tile> toEvacuate = new ArrayList<Tile>();
         for (Tile ant : untargeted) {
-            int distance = Registry.Instance.getDistance(_epicenter, ant);
-            if (distance <= _radiusOfRepulsion) {
+            if (isWithinRadius(ant, walking)) {
                 toEvacuate.add(ant);
             }
         }
         _log.debug("Hill [%s] has %d ant(s) to be repulsed", _epicenter, toEvacuate.size());
+        List<Tile> strongpoints = _defenseZone.getStrongpoints();
+        if (toEvacuate.isEmpty() || strongpoints.isEmpty()) {
+            return;
+        }
 
-        int numStrongpoints = _defenseZone.getStrongpoints().size();
-        int sampleSize = (int)Math.floor(numStrongpoints / untargeted.size());
-        if (sampleSize == 0) {
-            // Simple size should at least be one so we can progress through the strongpoints
-            sampleSize = 1;
+        long start = System.currentTimeMillis();
+        final int ants = toEvacuate.size();
+        final int targets = strongpoints.size();
+        int[] sources = new int[ants];
+        for (int i = 0; i < ants; i++) {
+            sources[i] = r.getCell(toEvacuate.get(i));
+        }
+        int[] targetCells = new int[targets];
+        for (int t = 0; t < targets; t++) {
+            targetCells[t] = r.getCell(strongpoints.get(t));
         }
-        boolean timedout = false;
-        for (int index = _sampleOffset++ % numStrongpoints;
-                index < numStrongpoints && !timedout;
-                index += sampleSize) {
-            // Shallow copy -- successful move will remove the ant from the to-be-evacuated set
-            AStarRoute shortest = null;
-            for (Tile ant : new ArrayList<Tile>(toEvacuate)) {
-                if (manager.stepTimeOverrun()) {
-                    timedout = true;
-                    break;
+        if (_distances == null) {
+            _distances = new DistanceTable(r);
+        }
+        _distances.compute(targetCells, targets, sources, ants,
+                           (int) (MAXIMUM_EGRESS_MULTIPLIER * (_radiusOfRepulsion + 1)));
+        int[] cost = new int[ants * targets];
+        for (int i = 0; i < ants; i++) {
+            for (int t = 0; t < targets; t++) {
+                int distance = _distances.getDistance(t, i);
+                cost[i * targets + t] = (distance > 0) ? distance : MinCostAssignment.FORBIDDEN;
+            }
+        }
+        int[] assignment = MinCostAssignment.solve(cost, ants, targets);
+        _log.debug("Assigned %d ant(s) among %d strongpoint(s) in %d ms",
+                   ants, targets, System.currentTimeMillis() - start);
+
+        int surplus = 0, stranded = 0;
+        for (int i = 0; i < ants && !manager.stepTimeOverrun(); i++) {
+            int target = assignment[i];
+            if (target < 0) {
+                // More ants than strongpoints:  share the nearest one with room to spare
+                target = nearestTarget(i, targetCells);
+                if (target < 0) {
+                    stranded++;
+                    continue;
                 }
-                try {
-                    AStarRoute route = new AStarRoute(ant, _defenseZone.getStrongpoints().get(index));
-                    if (shortest == null || route.getDistance() < shortest.getDistance()) {
-                        shortest = route;
-                    }
+                surplus++;
+            }
+            Aim direction = _distances.getDirection(target, i);
+            if (direction == null) {
+                continue;
+            }
+            Tile ant = toEvacuate.get(i);
+            Tile next = r.getTile(ant, direction);
+            Tile strongpoint = strongpoints.get(target);
+            if (handler.move(ant, next)) {
+                _log.debug("Repulsing ant at [%s] away from [%s], towards [%s]", ant, _epicenter, strongpoint);
+                if (!next.equals(strongpoint) && !isWithinRadius(next, walking)) {
+                    // Out of the radius, so it won't be evacuated again:  leave a trail the rest
+                    // of the way
+                    layBreadcrumbs(next, strongpoint);
                 }
-                catch (NoRouteException ex) {}
             }
-            if (shortest != null && handler.move(shortest.getStart(), shortest.nextTile())) {
-                TargetingHistory.Instance.create(shortest.getStart(),
-                                                 shortest.getEnd(),
-                                                 TargetingPolicy.Type.Unmanaged,
-                                                 shortest,
-                                                 shortest.getDistance(),
-                                                 true);
-                toEvacuate.remove(shortest.getStart());
-                _log.debug("Repulsing ant at [%s] away from [%s], using route: %s",
-                           shortest.getStart(), _epicenter, shortest);
+        }
+        if (surplus > 0 || stranded > 0) {
+            _log.debug("Hill [%s] has %d ant(s) sharing a strongpoint and %d that can't reach one",
+                       _epicenter, surplus, stranded);
+        }
+    }
+
+    private boolean isWithinRadius(Tile ant, boolean walking) {
+        final Registry r = _context.getRegistry();
+        int distance = walking ? _context.getHillDistances().walkDistance(_epicenter, r.getCell(ant))
+                               : r.getDistance(_epicenter, ant);
+        return distance != HillDistanceOracle.UNREACHABLE && distance <= _radiusOfRepulsion;
+    }
 
+    // Strongpoint nearest the ant, preferring one with room for a second ant beside it, or -1 if
+    // it can't reach any
+    private int nearestTarget(int ant, int[] targetCells) {
+        final Chokepoints chokepoints = _context.getChokepoints();
+        int nearest = -1;
+        boolean nearestRoomy = false;
+        for (int t = 0; t < _distances.getTargetCount(); t++) {
+            int distance = _distances.getDistance(t, ant);
+            if (distance <= 0) {
+                continue;
             }
-            if (toEvacuate.size() == 0) {
-                break;
+            // A cut vertex, or a cell in a corridor one wide, only holds one ant; any more queue
+            // up behind it and block the way
+            boolean roomy = !chokepoints.isArticulationPoint(targetCells[t])
+                            && chokepoints.getCorridorWidth(targetCells[t]) > 1;
+            if (nearest < 0 || (roomy && !nearestRoomy)
+                || (roomy == nearestRoomy && distance < _distances.getDistance(nearest, ant))) {
+                nearest = t;
+                nearestRoomy = roomy;
             }
         }
+        return nearest;
+    }
+
+    private void layBreadcrumbs(Tile from, Tile strongpoint) {
+        try {
+            AStarRoute route = new AStarRoute(_context, from, strongpoint);
+            _context.getTargetingHistory().create(from,
+                                                  strongpoint,
+                                                  TargetingPolicy.Type.Unmanaged,
+                                                  route,
+                                                  route.getDistance(),
+                                                  false);
+        } catch (NoRouteException ex) {
+            _log.debug("No route from [%s] to strongpoint [%s]", from, strongpoint);
+        }
     }
 }
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * Space-time reservations of cells for the next few turns, so that ants moving this turn (and
+ * planning their next moves) don't collide with each other.
+ *
+ * Step 1 is where ants will be once this turn's orders are carried out, step 2 a turn later,
+ * and so on up to the horizon.  Each reservation records its owner, by convention the cell the
+ * ant occupies one step earlier, and the turn it was made on.  Reservations for later steps
+ * carry over as the table moves on to the next turn, so an ant that follows its plan finds the
+ * way ahead still held for it, while others plan around it.
+ *
+ * Slots are reused in rotation and tagged with the absolute turn they apply to, so moving on to
+ * a new turn never clears anything.
+ */
+public class ReservationTable {
+
+    /**
+     * Owner reported for a cell that isn't reserved.
+     */
+    public static final int FREE = -1;
+
+    /**
+     * Owner of a cell held for no particular ant, which no ant may enter.
+     */
+    public static final int BLOCKED = -2;
+
+    private final int _cells;
+    private final int _horizon;
+    // Per (slot, cell):  absolute turn the reservation applies to, its owner and the turn it
+    // was made on
+    private final int[] _appliesTo;
+    private final int[] _owner;
+    private final int[] _madeOn;
+    private int _turn = 0;
+
+    /**
+     * @param cells   number of cells on the map
+     * @param horizon number of steps ahead that can be reserved
+     */
+    public ReservationTable(int cells, int horizon) {
+        _cells = cells;
+        _horizon = horizon;
+        _appliesTo = new int[(horizon + 1) * cells];
+        _owner = new int[(horizon + 1) * cells];
+        _madeOn = new int[(horizon + 1) * cells];
+        Arrays.fill(_appliesTo, -1);
+    }
+
+    /**
+     * Moves on to a new turn.  Reservations for turns that have now passed lapse.
+     *
+     * @param turn current turn number
+     */
+    public void startTurn(int turn) {
+        _turn = turn;
+    }
+
+    public int getHorizon() {
+        return _horizon;
+    }
+
+    /**
+     * Reserves a cell, replacing any earlier reservation.
+     *
+     * @param cell  cell id
+     * @param step  steps ahead, from 1 to the horizon
+     * @param owner cell of the ant one step earlier, or {@link #BLOCKED}
+     */
+    public void reserve(int cell, int step, int owner) {
+        final int i = index(cell, step);
+        _appliesTo[i] = _turn + step;
+        _owner[i] = owner;
+        _madeOn[i] = _turn;
+    }
+
+    /**
+     * @param cell cell id
+     * @param step steps ahead, from 1 to the horizon
+     * @return owner of the reservation, or {@link #FREE}
+     */
+    public int getOwner(int cell, int step) {
+        final int i = index(cell, step);
+        return (_appliesTo[i] == _turn + step) ? _owner[i] : FREE;
+    }
+
+    /**
+     * @param cell cell id
+     * @param step steps ahead, from 1 to the horizon
+     * @return true if the cell is reserved by a plan made on an earlier turn
+     */
+    public boolean isInherited(int cell, int step) {
+        final int i = index(cell, step);
+        return _appliesTo[i] == _turn + step && _madeOn[i] < _turn;
+    }
+
+    private int index(int cell, int step) {
+        if (step < 1 || step > _horizon) {
+            throw new IllegalArgumentException(String.format("Step %d outside horizon of %d", step, _horizon));
+        }
+        return ((_turn + step) % (_horizon + 1)) * _cells + cell;
+    }
+}
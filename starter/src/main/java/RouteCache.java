@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of routes keyed by (start, end) cell.
+ *
+ * Routes only depend on water, and discovering water can only lengthen routes or cut them off,
+ * so a cached route stays optimal until water turns up on one of its cells, at which point the
+ * registry's terrain notification drops it.  By the same argument a cached "no route" never goes
+ * stale.  A request whose start lies on a cached route to the same end is answered with that
+ * route's suffix, since every suffix of a shortest route is itself a shortest route.
+ */
+public class RouteCache implements Registry.TerrainListener {
+
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    private static final LogFacade _log = LogFacade.get(RouteCache.class);
+
+    private static class Entry {
+        final long Key;
+        final int End;
+        // Cells after the start up to and including the end, or null if there is no route
+        final PackedRoute Cells;
+
+        Entry(long key, int end, PackedRoute cells) {
+            Key = key;
+            End = end;
+            Cells = cells;
+        }
+    }
+
+    private final Registry _registry;
+    private final PathEngine _engine;
+    private final int _capacity;
+    private final LinkedHashMap<Long, Entry> _routes;
+    private final Map<Integer, List<Entry>> _byEnd = new HashMap<Integer, List<Entry>>();
+    // Number of cached routes passing through each cell, not counting their end cells
+    private final int[] _usage;
+    private int _hits = 0;
+    private int _suffixHits = 0;
+    private int _misses = 0;
+
+    public RouteCache(Registry registry, PathEngine engine, int capacity) {
+        _registry = registry;
+        _engine = engine;
+        _capacity = capacity;
+        _usage = new int[registry.getCellCount()];
+        _routes = new LinkedHashMap<Long, Entry>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > _capacity) {
+                    release(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a shortest route between two cells, from the cache where possible.
+     *
+     * @param start start cell
+     * @param end   end cell
+     * @return cells after <code>start</code> up to and including <code>end</code>, or null if the
+     *         end is unreachable
+     */
+    public PackedRoute find(int start, int end) {
+        final long key = key(start, end);
+        Entry entry = _routes.get(key);
+        if (entry != null) {
+            _hits++;
+            return entry.Cells;
+        }
+        PackedRoute cells = findSuffix(start, end);
+        if (cells != null) {
+            _suffixHits++;
+        } else {
+            _misses++;
+            final int length = _engine.findPath(start, end);
+            if (length >= 0) {
+                final int[] path = new int[length];
+                for (int i = 0; i < length; i++) {
+                    path[i] = _engine.getPathCell(i);
+                }
+                cells = new PackedRoute(_registry, path);
+            }
+        }
+        add(new Entry(key, end, cells));
+        return cells;
+    }
+
+    /**
+     * Caches a route found elsewhere, replacing any cached route between the same cells.
+     *
+     * @param start start cell
+     * @param end   end cell
+     * @param cells cells after <code>start</code> up to and including <code>end</code>, or null
+     *              if the end is unreachable
+     */
+    public void put(int start, int end, int[] cells) {
+        final long key = key(start, end);
+        Entry previous = _routes.remove(key);
+        if (previous != null) {
+            release(previous);
+        }
+        add(new Entry(key, end, (cells == null) ? null : new PackedRoute(_registry, cells)));
+    }
+
+    // Cached routes share storage with the suffixes carved out of them
+    private PackedRoute findSuffix(int start, int end) {
+        if (_usage[start] == 0) {
+            return null;
+        }
+        List<Entry> toEnd = _byEnd.get(end);
+        if (toEnd != null) {
+            for (Entry entry : toEnd) {
+                final int i = entry.Cells.indexOf(start);
+                if (i >= 0 && i < entry.Cells.length() - 1) {
+                    return entry.Cells.suffix(i + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void add(Entry entry) {
+        _routes.put(entry.Key, entry);
+        if (entry.Cells != null) {
+            List<Entry> toEnd = _byEnd.get(entry.End);
+            if (toEnd == null) {
+                toEnd = new ArrayList<Entry>(4);
+                _byEnd.put(entry.End, toEnd);
+            }
+            toEnd.add(entry);
+            for (int i = 0; i < entry.Cells.length() - 1; i++) {
+                _usage[entry.Cells.cell(i)]++;
+            }
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.Cells != null) {
+            List<Entry> toEnd = _byEnd.get(entry.End);
+            toEnd.remove(entry);
+            if (toEnd.isEmpty()) {
+                _byEnd.remove(entry.End);
+            }
+            for (int i = 0; i < entry.Cells.length() - 1; i++) {
+                _usage[entry.Cells.cell(i)]--;
+            }
+        }
+    }
+
+    /**
+     * Drops every cached route crossing the new water.
+     *
+     * @param cell newly discovered water cell
+     */
+    @Override
+    public void waterDiscovered(int cell) {
+        if (_usage[cell] == 0) {
+            return;
+        }
+        int dropped = 0;
+        for (Iterator<Entry> entries = _routes.values().iterator(); entries.hasNext() && _usage[cell] > 0; ) {
+            Entry entry = entries.next();
+            if (crosses(entry, cell)) {
+                entries.remove();
+                release(entry);
+                dropped++;
+            }
+        }
+        _log.debug("Water at [%s] invalidated %d cached route(s)", _registry.tileAt(cell), dropped);
+    }
+
+    private static boolean crosses(Entry entry, int cell) {
+        if (entry.Cells != null) {
+            final int i = entry.Cells.indexOf(cell);
+            return i >= 0 && i < entry.Cells.length() - 1;
+        }
+        return false;
+    }
+
+    private static long key(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    public int size() {
+        return _routes.size();
+    }
+
+    public int getHits() {
+        return _hits;
+    }
+
+    public int getSuffixHits() {
+        return _suffixHits;
+    }
+
+    public int getMisses() {
+        return _misses;
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * Precomputed cell offsets lying within a squared radius of a center cell, e.g. the view,
+ * attack or spawn "disc" of an ant.
+ *
+ * Offsets are held as primitive row/column delta arrays.  {@link #apply(int, int[])} resolves
+ * them against a center cell id, using plain linear offsets when the disc doesn't touch a map
+ * edge and falling back to per-offset wrapping otherwise.
+ */
+public final class Stencil {
+
+    private final int _radius2;
+    private final int _reach;
+    private final int _rows;
+    private final int _cols;
+    private final int[] _rowDeltas;
+    private final int[] _colDeltas;
+    // rowDelta * cols + colDelta, valid whenever the disc doesn't wrap
+    private final int[] _linear;
+
+    // Lazily computed cells gained/lost when the stencil's center moves one step, by Aim
+    private Stencil[] _leadingEdges;
+    private Stencil[] _trailingEdges;
+
+    /**
+     * Creates a stencil for the specified squared radius on a map of the given size.
+     *
+     * @param radius2 squared radius
+     * @param rows    game map height
+     * @param cols    game map width
+     */
+    public Stencil(int radius2, int rows, int cols) {
+        this(radius2, rows, cols, disc(radius2, 0, 0, false));
+    }
+
+    private Stencil(int radius2, int rows, int cols, int[][] deltas) {
+        _radius2 = radius2;
+        _rows = rows;
+        _cols = cols;
+        _rowDeltas = deltas[0];
+        _colDeltas = deltas[1];
+        _linear = new int[_rowDeltas.length];
+        int reach = 0;
+        for (int i = 0; i < _rowDeltas.length; i++) {
+            _linear[i] = _rowDeltas[i] * cols + _colDeltas[i];
+            reach = Math.max(reach, Math.max(Math.abs(_rowDeltas[i]), Math.abs(_colDeltas[i])));
+        }
+        _reach = reach;
+    }
+
+    // Offsets within radius2 of the origin.  If 'edge' is set, only those offsets that are
+    // not also within radius2 of (excludeRow, excludeCol) are returned.
+    private static int[][] disc(int radius2, int excludeRow, int excludeCol, boolean edge) {
+        final int reach = (int) Math.sqrt(radius2);
+        final int span = reach * 2 + 1;
+        int[] rowDeltas = new int[span * span];
+        int[] colDeltas = new int[span * span];
+        int size = 0;
+        for (int row = -reach; row <= reach; ++row) {
+            for (int col = -reach; col <= reach; ++col) {
+                if (row * row + col * col > radius2) {
+                    continue;
+                }
+                int r = row - excludeRow;
+                int c = col - excludeCol;
+                if (edge && r * r + c * c <= radius2) {
+                    continue;
+                }
+                rowDeltas[size] = row;
+                colDeltas[size] = col;
+                size++;
+            }
+        }
+        return new int[][]{Arrays.copyOf(rowDeltas, size), Arrays.copyOf(colDeltas, size)};
+    }
+
+    /**
+     * Returns the offsets, relative to the original center, that become covered when the
+     * center moves one step in the specified direction.
+     *
+     * @param direction direction of movement
+     * @return leading edge stencil
+     */
+    public Stencil getLeadingEdge(Aim direction) {
+        if (_leadingEdges == null) {
+            computeEdges();
+        }
+        return _leadingEdges[direction.ordinal()];
+    }
+
+    /**
+     * Returns the offsets, relative to the original center, that are no longer covered when
+     * the center moves one step in the specified direction.
+     *
+     * @param direction direction of movement
+     * @return trailing edge stencil
+     */
+    public Stencil getTrailingEdge(Aim direction) {
+        if (_trailingEdges == null) {
+            computeEdges();
+        }
+        return _trailingEdges[direction.ordinal()];
+    }
+
+    private void computeEdges() {
+        Stencil[] leading = new Stencil[Aim.values().length];
+        Stencil[] trailing = new Stencil[Aim.values().length];
+        for (Aim aim : Aim.values()) {
+            // Trailing:  in the old disc, but not the new one
+            trailing[aim.ordinal()] =
+                    new Stencil(_radius2, _rows, _cols,
+                                disc(_radius2, aim.getRowDelta(), aim.getColDelta(), true));
+            // Leading:  in the new disc, but not the old one.  Shift back to the old center
+            int[][] deltas = disc(_radius2, -aim.getRowDelta(), -aim.getColDelta(), true);
+            for (int i = 0; i < deltas[0].length; i++) {
+                deltas[0][i] += aim.getRowDelta();
+                deltas[1][i] += aim.getColDelta();
+            }
+            leading[aim.ordinal()] = new Stencil(_radius2, _rows, _cols, deltas);
+        }
+        _leadingEdges = leading;
+        _trailingEdges = trailing;
+    }
+
+    /**
+     * @return squared radius covered by this stencil
+     */
+    public int getRadius2() {
+        return _radius2;
+    }
+
+    /**
+     * @return number of offsets in this stencil, which is also the minimum size of the
+     *         buffer passed to {@link #apply(int, int[])}
+     */
+    public int getSize() {
+        return _rowDeltas.length;
+    }
+
+    public int getRowDelta(int i) {
+        return _rowDeltas[i];
+    }
+
+    public int getColDelta(int i) {
+        return _colDeltas[i];
+    }
+
+    /**
+     * Resolves every offset in this stencil against <code>center</code>.
+     *
+     * @param center center cell id
+     * @param out    buffer receiving the covered cell ids; must hold at least {@link #getSize()}
+     *               entries
+     * @return number of cell ids written to <code>out</code>
+     */
+    public int apply(final int center, final int[] out) {
+        final int size = _rowDeltas.length;
+        final int row = center / _cols;
+        final int col = center - row * _cols;
+        if (row >= _reach && row < _rows - _reach && col >= _reach && col < _cols - _reach) {
+            // Fast path -- no wrapping required
+            for (int i = 0; i < size; i++) {
+                out[i] = center + _linear[i];
+            }
+            return size;
+        }
+        for (int i = 0; i < size; i++) {
+            int r = row + _rowDeltas[i];
+            if (r < 0 || r >= _rows) {
+                r %= _rows;
+                if (r < 0) {
+                    r += _rows;
+                }
+            }
+            int c = col + _colDeltas[i];
+            if (c < 0 || c >= _cols) {
+                c %= _cols;
+                if (c < 0) {
+                    c += _cols;
+                }
+            }
+            out[i] = r * _cols + c;
+        }
+        return size;
+    }
+}
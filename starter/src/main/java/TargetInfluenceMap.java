@@ -3,21 +3,132 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Author: evan.pollan
  */
 public class TargetInfluenceMap {
 
-    private final double[][] _influence;
-    private final boolean[][] _seeded;
+    /**
+     * How seeded influence spreads over the map.
+     */
+    public static enum Propagation {
+        /**
+         * Repeated passes setting each cell to the average of its neighbours from the previous
+         * pass, until time runs out or {@link TargetInfluenceMap#RELAXATION_PASSES} are done.
+         * Row stripes of the map are relaxed in parallel.
+         *
+         * Reading only the previous pass (Jacobi) is what lets stripes run concurrently, but it
+         * gives a different field from sweeping forward and back over the map updating cells in
+         * place (Gauss-Seidel), as this used to.  A sweep could carry influence across the whole
+         * map at once, where a pass only moves it one cell, so influence reaches at most
+         * {@link TargetInfluenceMap#RELAXATION_PASSES} moves from its seed (half way round the
+         * largest maps) and is weaker at a distance than it was.
+         */
+        RELAXATION,
+        /**
+         * A single wavefront out from the seeds, each cell taking the strongest seed's influence
+         * decayed by {@link TargetInfluenceMap#DECAY} per move.  Linear in the number of cells.
+         * Waves pass through weaker seeds, which keep their own influence.  This is a different
+         * field from relaxation's (the strongest seed's decayed influence rather than an average
+         * of every seed's), so it's only chosen where relaxation costs too much; see
+         * {@link TargetInfluenceMap#selectPropagation}.
+         */
+        WAVEFRONT
+    }
+
+    /**
+     * Fraction of influence carried over to each neighbouring cell by the wavefront.
+     */
+    public static final double DECAY = 0.9;
+
+    /**
+     * Most relaxation passes per reset, in place of the 50 forward and backward sweeps used
+     * before.
+     */
+    public static final int RELAXATION_PASSES = 100;
+
+    /**
+     * Maps with at least this many cells use the wavefront when the engine is picked by
+     * {@link #selectPropagation}.  Relaxation's passes each cover every cell, and from about this
+     * size they take several times as long as the wavefront (over 6 times on a 200x200 map).
+     */
+    public static final int LARGE_MAP_CELLS = 64 * 64;
+
+    private final Registry _registry;
+    private final Propagation _propagation;
+    private final double[] _influence;
+    private final boolean[] _seeded;
+    // Seeded cells, in the order first seeded, and the wavefront's scratch space
+    private final CellList _seeds = new CellList();
+    private final boolean[] _settled;
+    private final int[] _queue;
+    // Relaxation's second buffer, or the strength of the wavefront through each cell; then the
+    // cells relaxation leaves alone and the row stripes it works on
+    private final double[] _buffer;
+    private final boolean[] _fixed;
+    private final List<Stripe> _stripes;
+    private final GameContext _context;
     private static final LogFacade _log = LogFacade.get(TargetInfluenceMap.class);
     private static final float FOOD_TO_ANT_SCENT_RATIO = 0.1f;
 
-    public TargetInfluenceMap() {
-        Registry r = Registry.Instance;
-        _influence = new double[r.getRows()][r.getCols()];
-        _seeded = new boolean[r.getRows()][r.getCols()];
+    public TargetInfluenceMap(GameContext context) {
+        this(context, Propagation.RELAXATION);
+    }
+
+    public TargetInfluenceMap(GameContext context, Propagation propagation) {
+        this(context, propagation, context.getWorkerCount());
+    }
+
+    /**
+     * @param context     game context
+     * @param propagation how influence spreads
+     * @param stripes     number of row stripes to relax in parallel; relaxation gives the same
+     *                    result however many there are
+     */
+    public TargetInfluenceMap(GameContext context, Propagation propagation, int stripes) {
+        _context = context;
+        _registry = context.getRegistry();
+        _propagation = propagation;
+        final int cells = _registry.getCellCount();
+        _influence = new double[cells];
+        _seeded = new boolean[cells];
+        _settled = new boolean[cells];
+        _queue = new int[cells];
+        _buffer = new double[cells];
+        _fixed = new boolean[cells];
+        final int rows = _registry.getRows(), cols = _registry.getCols();
+        stripes = (propagation == Propagation.RELAXATION) ? Math.max(1, Math.min(stripes, rows)) : 1;
+        _stripes = new ArrayList<Stripe>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            _stripes.add(new Stripe(i * rows / stripes * cols, (i + 1) * rows / stripes * cols));
+        }
+    }
+
+    /**
+     * Picks the engine for a map:  the wavefront on large maps, where relaxation is the most
+     * expensive step of a turn, and relaxation on the rest.
+     *
+     * @param registry game state
+     * @return engine to spread influence with
+     */
+    public static Propagation selectPropagation(Registry registry) {
+        return (registry.getCellCount() >= LARGE_MAP_CELLS) ? Propagation.WAVEFRONT : Propagation.RELAXATION;
+    }
+
+    public Propagation getPropagation() {
+        return _propagation;
+    }
+
+    /**
+     * @return number of row stripes relaxed in parallel
+     */
+    public int getStripeCount() {
+        return _stripes.size();
     }
 
     public void reset(Iterable<Tile> unseenTiles,
@@ -25,13 +136,10 @@ public class TargetInfluenceMap {
                       TimeManager time,
                       Iterable<DefenseZone> defenses,
                       Iterable<CombatZone> combatZones) {
-        for (double[] row : _influence) {
-            Arrays.fill(row, 0, row.length, 0.0);
-        }
-        for (boolean[] row : _seeded) {
-            Arrays.fill(row, 0, row.length, false);
-        }
-        Registry r = Registry.Instance;
+        Arrays.fill(_influence, 0.0);
+        Arrays.fill(_seeded, false);
+        _seeds.clear();
+        Registry r = _registry;
         seedInfluence(enemyHills, Integer.MAX_VALUE);
         // Food influence will decay as our number of ants increases
         double foodInfluence =
@@ -49,17 +157,21 @@ public class TargetInfluenceMap {
             seedInfluence(defenseZone.getInvisibleLookouts(), Integer.MAX_VALUE / 2.0);
         }
 
-        diffuse(time);
+        if (_propagation == Propagation.WAVEFRONT) {
+            spread();
+        } else {
+            diffuse(time);
+        }
 
         for (Tile hill : r.getMyHills()) {
             // Discourage hill-squatting -- do this after diffusion
-            _influence[hill.getRow()][hill.getCol()] = 0.0;
+            _influence[r.getCell(hill)] = 0.0;
         }
         if (_log.isDebugEnabled() && false) {
-            for (int row = 0; row < _influence.length; row++) {
-                for (int col = 0; col < _influence[row].length; col++) {
-                    if (r.isVisible(new Tile(row, col))) {
-                        double alpha = _influence[row][col] / (Integer.MAX_VALUE * 1.0);
+            for (int row = 0; row < r.getRows(); row++) {
+                for (int col = 0; col < r.getCols(); col++) {
+                    if (r.isVisible(row, col)) {
+                        double alpha = _influence[r.getCell(row, col)] / (Integer.MAX_VALUE * 1.0);
                         if (alpha > 1.0) {
                             alpha = 1.0;
                         }
@@ -76,75 +188,168 @@ public class TargetInfluenceMap {
     }
 
     private void seedInfluence(Iterable<Tile> targets, double influence) {
+        Registry r = _registry;
         for (Tile t : targets) {
-            _seeded[t.getRow()][t.getCol()] = true;
-            _influence[t.getRow()][t.getCol()] = influence;
+            final int cell = r.getCell(t);
+            if (!_seeded[cell]) {
+                _seeds.add(cell);
+            }
+            _seeded[cell] = true;
+            _influence[cell] = influence;
         }
     }
 
-    private void diffuse(TimeManager time) {
-        for (int rep = 0; rep < 50; rep++) {
-            for (int row = 0; row < _influence.length; row++) {
-                for (int col = 0; col < _influence[row].length; col++) {
-                    propagate(row, col);
-                }
+    // Settles cells strongest first:  seeds in order of influence, merged with a FIFO of the
+    // cells they reach, which never gains a stronger cell than one already taken from it.  The
+    // wave's strength is tracked apart from the influence so that it carries on through a weaker
+    // seed without overwriting it.
+    private void spread() {
+        final Registry r = _registry;
+        final double[] influence = _influence, wave = _buffer;
+        Integer[] seeds = new Integer[_seeds.size()];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = _seeds.get(i);
+        }
+        Arrays.sort(seeds, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer c1, Integer c2) {
+                return -Double.compare(influence[c1], influence[c2]);
             }
-            for (int row = _influence.length - 1; row >= 0; row--) {
-                for (int col = _influence[row].length - 1; col >= 0; col--) {
-                    propagate(row, col);
-                }
+        });
+        System.arraycopy(influence, 0, wave, 0, wave.length);
+        Arrays.fill(_settled, false);
+        int next = 0, head = 0, tail = 0;
+        while (next < seeds.length || head < tail) {
+            final int cell;
+            if (head < tail && (next == seeds.length || wave[_queue[head]] >= wave[seeds[next]])) {
+                cell = _queue[head++];
+            } else {
+                cell = seeds[next++];
             }
-            if (rep % 15 == 0 && time.stepTimeOverrun()) {
-                break;
+            if (_settled[cell]) {
+                continue;
+            }
+            _settled[cell] = true;
+            if (!_seeded[cell]) {
+                influence[cell] = wave[cell];
+            }
+            final double decayed = wave[cell] * DECAY;
+            for (Aim aim : Aim.values()) {
+                final int neighbor = r.neighbor(cell, aim);
+                if (!_settled[neighbor] && decayed > wave[neighbor] && r.isPassable(neighbor)) {
+                    wave[neighbor] = decayed;
+                    _queue[tail++] = neighbor;
+                }
             }
         }
     }
 
-    private void propagate(int row, int col) {
-        if (_seeded[row][col] || Registry.Instance.getIlk(row, col) == Ilk.WATER) {
-            return;
+    // Jacobi relaxation:  each pass reads only the previous pass's buffer, so stripes can be
+    // relaxed concurrently, reading across each other's boundary rows (and the map's wrap)
+    // without waiting on one another.  Finishing a pass is the barrier between stripes.
+    private void diffuse(TimeManager time) {
+        final Registry r = _registry;
+        for (int cell = 0; cell < _fixed.length; cell++) {
+            _fixed[cell] = _seeded[cell] || !r.isPassable(cell);
         }
-        double diffused =
-                get(row - 1, col, 0.25) +
-                get(row + 1, col, 0.25) +
-                get(row, col - 1, 0.25) +
-                get(row, col + 1, 0.25);
-        if (!_seeded[row][col] || diffused > _influence[row][col]) {
-            _influence[row][col] = diffused;
+        System.arraycopy(_influence, 0, _buffer, 0, _influence.length);
+        double[] from = _influence, to = _buffer;
+        for (int pass = 0; pass < RELAXATION_PASSES; pass++) {
+            for (Stripe stripe : _stripes) {
+                stripe.from = from;
+                stripe.to = to;
+            }
+            if (!relax()) {
+                break;
+            }
+            double[] swap = from;
+            from = to;
+            to = swap;
+            if (time.stepTimeOverrun()) {
+                break;
+            }
+        }
+        if (from != _influence) {
+            System.arraycopy(from, 0, _influence, 0, _influence.length);
         }
     }
 
-    private double get(int row, int col, double contribution) {
-        if (row < 0) {
-            row = Registry.Instance.getRows() - 1;
+    // Runs one pass over every stripe; false if it couldn't be completed
+    private boolean relax() {
+        if (_stripes.size() == 1) {
+            _stripes.get(0).call();
+            return true;
         }
-        if (row == Registry.Instance.getRows()) {
-            row = 0;
+        try {
+            // Asked for each pass, since the context may have been closed and its pool restarted
+            for (Future<Void> done : _context.getWorkers().invokeAll(_stripes)) {
+                done.get();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Influence relaxation failed", e.getCause());
         }
-        if (col < 0) {
-            col = Registry.Instance.getCols() - 1;
+    }
+
+    /**
+     * A band of whole rows, relaxed from one buffer into the other.
+     */
+    private final class Stripe implements Callable<Void> {
+
+        private final int _first;
+        private final int _end;
+        double[] from;
+        double[] to;
+
+        Stripe(int first, int end) {
+            _first = first;
+            _end = end;
         }
-        if (col == Registry.Instance.getCols()) {
-            col = 0;
+
+        @Override
+        public Void call() {
+            final Registry r = _registry;
+            final boolean[] fixed = _fixed;
+            final double[] from = this.from, to = this.to;
+            for (int cell = _first; cell < _end; cell++) {
+                to[cell] = fixed[cell] ? from[cell]
+                         : (from[r.neighbor(cell, Aim.NORTH)] +
+                            from[r.neighbor(cell, Aim.SOUTH)] +
+                            from[r.neighbor(cell, Aim.WEST)] +
+                            from[r.neighbor(cell, Aim.EAST)]) * 0.25;
+            }
+            return null;
         }
-        return _influence[row][col] * contribution;
+    }
+
+    /**
+     * @param t location on the game map
+     * @return influence at the location as of the last reset
+     */
+    public double getInfluence(Tile t) {
+        return _influence[_registry.getCell(t)];
     }
 
     private ArrayList<Tile> _moveBuffer = new ArrayList<Tile>(5);
 
     public Iterator<Tile> getTargets(Tile myAnt) {
         // Get possible move tiles (including no movement), ordered by influence
+        final Registry r = _registry;
+        final int cell = r.getCell(myAnt);
         _moveBuffer.clear();
         _moveBuffer.add(myAnt);
-        addTargets(myAnt.getRow() - 1, myAnt.getCol());
-        addTargets(myAnt.getRow() + 1, myAnt.getCol());
-        addTargets(myAnt.getRow(), myAnt.getCol() - 1);
-        addTargets(myAnt.getRow(), myAnt.getCol() + 1);
+        addTargets(r, r.neighbor(cell, Aim.NORTH));
+        addTargets(r, r.neighbor(cell, Aim.SOUTH));
+        addTargets(r, r.neighbor(cell, Aim.WEST));
+        addTargets(r, r.neighbor(cell, Aim.EAST));
         Collections.sort(_moveBuffer, new Comparator<Tile>() {
             @Override
             public int compare(Tile o1, Tile o2) {
-                int comparison = -Double.compare(_influence[o1.getRow()][o1.getCol()],
-                                                 _influence[o2.getRow()][o2.getCol()]);
+                int comparison = -Double.compare(_influence[r.getCell(o1)],
+                                                 _influence[r.getCell(o2)]);
                 if (comparison == 0) {
                     comparison = o1.compareTo(o2);
                 }
@@ -154,27 +359,15 @@ public class TargetInfluenceMap {
         if (_log.isDebugEnabled()) {
             for (Tile t : _moveBuffer) {
                 _log.debug("[%s] move: [%s], influence=%f",
-                           myAnt, t, _influence[t.getRow()][t.getCol()]);
+                           myAnt, t, _influence[r.getCell(t)]);
             }
         }
         return _moveBuffer.iterator();
     }
 
-    private void addTargets(int row, int col) {
-        if (row < 0) {
-            row = Registry.Instance.getRows() - 1;
-        }
-        if (row == Registry.Instance.getRows()) {
-            row = 0;
-        }
-        if (col < 0) {
-            col = Registry.Instance.getCols() - 1;
-        }
-        if (col == Registry.Instance.getCols()) {
-            col = 0;
-        }
-        if (Registry.Instance.getIlk(row, col) != Ilk.WATER) {
-            _moveBuffer.add(new Tile(row, col));
+    private void addTargets(Registry r, int cell) {
+        if (r.isPassable(cell)) {
+            _moveBuffer.add(r.tileAt(cell));
         }
     }
 }
@@ -13,10 +13,10 @@ public class TargetingHistory {
     private int _turn;
     private final ArrayList<Tile> _neighborsBuffer = new ArrayList<Tile>(8);
     private static final LogFacade _log = LogFacade.get(TargetingHistory.class);
+    private final GameContext _context;
 
-    public static final TargetingHistory Instance = new TargetingHistory();
-
-    private TargetingHistory() {
+    TargetingHistory(GameContext context) {
+        _context = context;
     }
 
     public void syncState(int turn) {
@@ -35,13 +35,13 @@ public class TargetingHistory {
                     // clobbering targeting histories unnecessarily
                     break;
                 case EnemyHill:
-                    present = Registry.Instance.getEnemyHills().contains(entry.getValue().Destination);
+                    present = _context.getRegistry().getEnemyHills().contains(entry.getValue().Destination);
                     break;
                 case Food:
-                    present = Registry.Instance.getFoodTiles().contains(entry.getValue().Destination);
+                    present = _context.getRegistry().getFoodTiles().contains(entry.getValue().Destination);
                     break;
                 case UnseenTile:
-                    present = Registry.Instance.isVisible(entry.getValue().Destination);
+                    present = _context.getRegistry().isVisible(entry.getValue().Destination);
                     break;
                 default:
             }
@@ -70,11 +70,9 @@ public class TargetingHistory {
             return;
         }
         final Tile influencer = current;
-        for (Tile nextHop : route.routeTiles()) {
-            if (skipStart) {
-                skipStart = false;
-                continue;
-            }
+        final PackedRoute hops = route.getPackedRoute();
+        for (int i = skipStart ? 1 : 0; i < hops.length(); i++) {
+            final Tile nextHop = hops.tile(i);
             if (nextHop.equals(destination)) {
                 break;
             }
@@ -119,7 +117,7 @@ public class TargetingHistory {
             } else if (!ant.equals(influence.Destination)) {
                 // We need to calculate our own route from this tile
                 try {
-                    AStarRoute route = new AStarRoute(ant, influence.Destination);
+                    AStarRoute route = new AStarRoute(_context, ant, influence.Destination);
                     if (handler.move(ant, route.nextTile(), route.getEnd(), influence.Type)) {
                         _log.debug("Picked up %s targeting for [%s] based on route influence",
                                    influence.Type, influence.Destination);
@@ -139,7 +137,7 @@ public class TargetingHistory {
             } else {
                 _log.debug("Cannot follow routed breadcrumb from [%s] to [%s], attempting re-route...", ant, routed.Next);
                 try {
-                    AStarRoute updated = new AStarRoute(ant, routed.Destination);
+                    AStarRoute updated = new AStarRoute(_context, ant, routed.Destination);
                     if (handler.move(ant, updated.nextTile(), updated.getEnd(), routed.Type)) {
                         _log.debug("Re-routed [%s] to %s breadcrumb destination at [%s]",
                                    ant, routed.Type, updated.getEnd());
@@ -168,7 +166,7 @@ public class TargetingHistory {
         _neighborsBuffer.clear();
         Tile lastNeighbor = center;
         for (Aim aim : traversal) {
-            Tile neighbor = Registry.Instance.getTile(lastNeighbor, aim);
+            Tile neighbor = _context.getRegistry().getTile(lastNeighbor, aim);
             if (!neighbor.equals(next)) {
                 _neighborsBuffer.add(neighbor);
             }
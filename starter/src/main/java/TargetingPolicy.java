@@ -21,38 +21,6 @@ public class TargetingPolicy {
         DefensiveStation
     }
 
-    private static Map<Type, TargetingPolicy> _policies = new HashMap<Type, TargetingPolicy>();
-
-    public static void clearAssignments() {
-        for (TargetingPolicy p : _policies.values()) {
-            for (X.ReferenceInt assignment : p._assignments.values()) {
-                assignment.Value = 0;
-            }
-            p._totalAssignments = 0;
-            p._totalAssignmentsLimit = null;
-        }
-    }
-
-    public static void add(Type type,
-                           int perTargetAssignmentLimit,
-                           Integer perAntRouteLimit,
-                           Integer antLimit,
-                           Integer perTargetAssignmentFloor) {
-        _policies.put(type, new TargetingPolicy(type, perTargetAssignmentLimit,
-                                                perAntRouteLimit, antLimit, perTargetAssignmentFloor));
-    }
-
-    private static TargetingPolicy UNMANAGED =
-            new TargetingPolicy(Type.Unmanaged, Integer.MAX_VALUE, null, null, null);
-
-    static {
-        _policies.put(Type.Unmanaged, UNMANAGED);
-    }
-
-    public static TargetingPolicy get(Type type) {
-        return _policies.get(type);
-    }
-
     private Integer _perAntRouteLimit;
     private int _perTargetAssignmentLimit;
     private int _totalAssignments = 0;
@@ -75,11 +43,11 @@ public class TargetingPolicy {
      * @param perTargetAssignmentFloor optional, minimum number of ants that should be targeted before
      *                                 considering a different target
      */
-    private TargetingPolicy(Type type,
-                            int perTargetAssignmentLimit,
-                            Integer perAntRouteLimit,
-                            Integer antLimit,
-                            Integer perTargetAssignmentFloor) {
+    TargetingPolicy(Type type,
+                    int perTargetAssignmentLimit,
+                    Integer perAntRouteLimit,
+                    Integer antLimit,
+                    Integer perTargetAssignmentFloor) {
         _type = type;
         _assignments = new HashMap<Tile, X.ReferenceInt>();
         _perTargetAssignmentLimit = perTargetAssignmentLimit;
@@ -88,6 +56,14 @@ public class TargetingPolicy {
         _antLimit = antLimit;
     }
 
+    void clearAssignments() {
+        for (X.ReferenceInt assignment : _assignments.values()) {
+            assignment.Value = 0;
+        }
+        _totalAssignments = 0;
+        _totalAssignmentsLimit = null;
+    }
+
     public int getPerTargetAssignmentLimit() {
         return _perTargetAssignmentLimit;
     }
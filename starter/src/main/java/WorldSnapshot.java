@@ -0,0 +1,172 @@
+import java.util.Collection;
+
+/**
+ * Immutable copy of the game state as it stood at the end of a turn's input, after vision was
+ * updated but before any orders were issued.
+ *
+ * {@link Registry} keeps mutating its own map as orders are issued during the turn; a snapshot
+ * never changes once published, so worker threads can read it concurrently with the main thread
+ * without locking.  Every field is final and every array is either a private copy or one of
+ * the registry's construction-time tables (tiles, neighbors) that are never written again.
+ */
+public final class WorldSnapshot {
+
+    private static final Ilk[] ILKS = Ilk.values();
+
+    private static final byte WATER_ILK = (byte) Ilk.WATER.ordinal();
+
+    private final int _turn;
+    private final long _turnStartTime;
+    private final int _rows;
+    private final int _cols;
+    private final byte[] _ilks;
+    private final int[] _neighbors;
+    private final Tile[] _tiles;
+    private final BitLayer _visible;
+    private final int[] _myAnts;
+    private final int[] _enemyAnts;
+    private final int[] _enemyTeams;
+    private final int[] _myHills;
+    private final int[] _enemyHills;
+    private final int[] _food;
+
+    /**
+     * Copies the current state of the specified registry.  Only called by {@link Registry}.
+     */
+    WorldSnapshot(Registry registry, byte[] ilks, int[] neighbors, Tile[] tiles, BitLayer visible) {
+        _turn = registry.getTurn();
+        _turnStartTime = registry.getTurnStartTime();
+        _rows = registry.getRows();
+        _cols = registry.getCols();
+        _ilks = ilks.clone();
+        _neighbors = neighbors;
+        _tiles = tiles;
+        _visible = new BitLayer(_rows, _cols);
+        _visible.copyFrom(visible);
+        _myAnts = toCells(registry, registry.getMyAnts());
+        _myHills = toCells(registry, registry.getMyHills());
+        _enemyHills = toCells(registry, registry.getEnemyHills());
+        _food = toCells(registry, registry.getFoodTiles());
+        Collection<EnemyAnt> enemies = registry.getTeamedEnemyAnts();
+        _enemyAnts = new int[enemies.size()];
+        _enemyTeams = new int[enemies.size()];
+        int i = 0;
+        for (EnemyAnt enemy : enemies) {
+            _enemyAnts[i] = registry.getCell(enemy.getPosition());
+            _enemyTeams[i] = enemy.getTeam();
+            i++;
+        }
+    }
+
+    private static int[] toCells(Registry registry, Collection<Tile> tiles) {
+        int[] cells = new int[tiles.size()];
+        int i = 0;
+        for (Tile t : tiles) {
+            cells[i++] = registry.getCell(t);
+        }
+        return cells;
+    }
+
+    public int getTurn() {
+        return _turn;
+    }
+
+    /**
+     * @return time the snapshot's turn started, as reported by {@link System#currentTimeMillis()}
+     */
+    public long getTurnStartTime() {
+        return _turnStartTime;
+    }
+
+    public int getRows() {
+        return _rows;
+    }
+
+    public int getCols() {
+        return _cols;
+    }
+
+    public int getCellCount() {
+        return _ilks.length;
+    }
+
+    public int getRow(int cell) {
+        return cell / _cols;
+    }
+
+    public int getCol(int cell) {
+        return cell % _cols;
+    }
+
+    public Tile tileAt(int cell) {
+        return _tiles[cell];
+    }
+
+    public Ilk getIlk(int cell) {
+        return ILKS[_ilks[cell]];
+    }
+
+    public boolean isWater(int cell) {
+        return _ilks[cell] == WATER_ILK;
+    }
+
+    public boolean isPassable(int cell) {
+        return ILKS[_ilks[cell]].isPassable();
+    }
+
+    public boolean isVisible(int cell) {
+        return _visible.get(cell);
+    }
+
+    public int neighbor(int cell, Aim direction) {
+        return _neighbors[(cell << 2) + direction.ordinal()];
+    }
+
+    /**
+     * @param from one cell
+     * @param to   another cell
+     * @return squared euclidean distance between the cells on the torus
+     */
+    public int getDistance2(int from, int to) {
+        int rowDelta = Math.abs(from / _cols - to / _cols);
+        int colDelta = Math.abs(from % _cols - to % _cols);
+        rowDelta = Math.min(rowDelta, _rows - rowDelta);
+        colDelta = Math.min(colDelta, _cols - colDelta);
+        return rowDelta * rowDelta + colDelta * colDelta;
+    }
+
+    // The accessors below return the snapshot's own arrays; callers must not modify them.
+
+    /**
+     * @return cells of my ants
+     */
+    public int[] getMyAnts() {
+        return _myAnts;
+    }
+
+    /**
+     * @return cells of visible enemy ants, parallel to {@link #getEnemyTeams()}
+     */
+    public int[] getEnemyAnts() {
+        return _enemyAnts;
+    }
+
+    /**
+     * @return team of each enemy ant, parallel to {@link #getEnemyAnts()}
+     */
+    public int[] getEnemyTeams() {
+        return _enemyTeams;
+    }
+
+    public int[] getMyHills() {
+        return _myHills;
+    }
+
+    public int[] getEnemyHills() {
+        return _enemyHills;
+    }
+
+    public int[] getFood() {
+        return _food;
+    }
+}
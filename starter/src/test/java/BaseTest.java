@@ -1,7 +1,9 @@
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 
 import java.io.BufferedReader;
 import java.io.StringReader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -14,6 +16,7 @@ import java.util.Map;
 public class BaseTest {
 
     protected TimeManager _dummyManager;
+    protected GameContext _context;
 
     @BeforeClass
     public void setup() {
@@ -27,6 +30,13 @@ public class BaseTest {
         _dummyManager.nextStep();
     }
 
+    @AfterClass
+    public void teardown() {
+        if (_context != null) {
+            _context.close();
+        }
+    }
+
     protected void buildState(String map)
             throws Exception {
         BufferedReader reader = new BufferedReader(new StringReader(map));
@@ -62,13 +72,42 @@ public class BaseTest {
             }
             rows++;
         }
-        Registry.initialize(0, 0, rows, cols, 0, 50, 5, 0);
+        if (_context != null) {
+            _context.close();
+        }
+        _context = new GameContext();
+        _context.initialize(0, 0, rows, cols, 0, 50, 5, 0);
         for (Map.Entry<Tile, Ilk> e : layout.entrySet()) {
             if (e.getValue() == Ilk.ENEMY_ANT) {
-                Registry.Instance.update(e.getValue(), e.getKey(), 1);
+                _context.getRegistry().update(e.getValue(), e.getKey(), 1);
             } else {
-                Registry.Instance.update(e.getValue(), e.getKey());
+                _context.getRegistry().update(e.getValue(), e.getKey());
+            }
+        }
+    }
+
+    /**
+     * Walking distances from a cell over passable cells, for checking searches against.
+     *
+     * @return moves from <code>source</code> to each cell, or -1 where it can't be reached
+     */
+    protected static int[] breadthFirst(Registry r, int source) {
+        int[] distance = new int[r.getCellCount()];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[r.getCellCount()];
+        int head = 0, tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (Aim aim : Aim.values()) {
+                int neighbor = r.neighbor(cell, aim);
+                if (distance[neighbor] < 0 && r.isPassable(neighbor)) {
+                    distance[neighbor] = distance[cell] + 1;
+                    queue[tail++] = neighbor;
+                }
             }
         }
+        return distance;
     }
 }
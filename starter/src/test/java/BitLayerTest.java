@@ -0,0 +1,46 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class BitLayerTest extends BaseTest {
+
+    public void testShiftWrapsAcrossWords() throws Exception {
+        // 70 columns straddles two words per row
+        BitLayer src = new BitLayer(5, 70);
+        src.set(cell(4, 69, 70));
+        BitLayer shifted = new BitLayer(5, 70).shift(src, 1, 1);
+        Assert.assertTrue(shifted.get(cell(0, 0, 70)));
+        Assert.assertEquals(shifted.cardinality(), 1);
+
+        shifted.shift(src, -4, -69);
+        Assert.assertTrue(shifted.get(cell(0, 0, 70)));
+        Assert.assertEquals(shifted.cardinality(), 1);
+    }
+
+    public void testDilateMatchesStencil() throws Exception {
+        final int rows = 20, cols = 90, radius2 = 17;
+        BitLayer src = new BitLayer(rows, cols);
+        int[] seeds = {cell(0, 0, cols), cell(10, 63, cols), cell(19, 89, cols)};
+        boolean[] expected = new boolean[rows * cols];
+        Stencil stencil = new Stencil(radius2, rows, cols);
+        int[] buffer = new int[stencil.getSize()];
+        for (int seed : seeds) {
+            src.set(seed);
+            int covered = stencil.apply(seed, buffer);
+            for (int i = 0; i < covered; i++) {
+                expected[buffer[i]] = true;
+            }
+        }
+        BitLayer dilated = new BitLayer(rows, cols).dilate(src, radius2);
+        int count = 0;
+        for (int c = 0; c < rows * cols; c++) {
+            Assert.assertEquals(dilated.get(c), expected[c], "cell " + c);
+            count += expected[c] ? 1 : 0;
+        }
+        Assert.assertEquals(dilated.cardinality(), count);
+    }
+
+    private static int cell(int row, int col, int cols) {
+        return row * cols + col;
+    }
+}
@@ -0,0 +1,81 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+@Test
+public class ChokepointsTest extends BaseTest {
+
+    public void testArticulationPointsAndWidths() throws Exception {
+        buildState("WWWWWWWWWW\n" +
+                   "W...W....W\n" +
+                   "W........W\n" +
+                   "W...W....W\n" +
+                   "WWWWWWWWWW");
+        Registry r = _context.getRegistry();
+        Chokepoints chokepoints = _context.getChokepoints();
+        // The gap between the two rooms and the cells either side of it
+        Assert.assertEquals(chokepoints.getArticulationPointCount(), 3);
+        for (int col = 3; col <= 5; col++) {
+            Assert.assertTrue(chokepoints.isArticulationPoint(r.getCell(r.tileAt(2, col))));
+        }
+        Assert.assertEquals(chokepoints.getCorridorWidth(r.getCell(r.tileAt(2, 4))), 1);
+        Assert.assertEquals(chokepoints.getCorridorWidth(r.getCell(r.tileAt(3, 8))), 3);
+        Assert.assertEquals(chokepoints.getCorridorWidth(r.getCell(r.tileAt(0, 0))), 0);
+
+        // Walling off a corner of the right-hand room leaves its neighbour as a cut vertex
+        r.update(Ilk.WATER, r.tileAt(2, 8));
+        Assert.assertTrue(chokepoints.isArticulationPoint(r.getCell(r.tileAt(1, 7))));
+        Assert.assertEquals(chokepoints.getArticulationPointCount(), 5);
+        Assert.assertEquals(chokepoints.getCorridorWidth(r.getCell(r.tileAt(3, 8))), 1);
+        Assert.assertEquals(chokepoints.getCorridorWidth(r.getCell(r.tileAt(2, 6))), 3);
+    }
+
+    public void testNewWaterOnlyUpdatesItsRegion() throws Exception {
+        StringBuilder map = new StringBuilder();
+        for (int row = 0; row < 20; row++) {
+            for (int col = 0; col < 20; col++) {
+                map.append('.');
+            }
+            map.append(row < 19 ? "\n" : "");
+        }
+        buildState(map.toString());
+        Registry r = _context.getRegistry();
+        Chokepoints chokepoints = _context.getChokepoints();
+        Assert.assertEquals(chokepoints.getArticulationPointCount(), 0);
+        Random random = new Random(23);
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < 1 + random.nextInt(8); i++) {
+                r.update(Ilk.WATER, r.tileAt(random.nextInt(20), random.nextInt(20)));
+            }
+            // A search of the whole map as it now stands
+            Chokepoints fresh = new Chokepoints(r);
+            Assert.assertEquals(chokepoints.getArticulationPointCount(), fresh.getArticulationPointCount());
+            for (int cell = 0; cell < r.getCellCount(); cell++) {
+                Assert.assertEquals(chokepoints.isArticulationPoint(cell), fresh.isArticulationPoint(cell),
+                                    "Cell " + r.tileAt(cell) + " in round " + round);
+            }
+        }
+        Assert.assertTrue(chokepoints.getArticulationPointCount() > 0);
+    }
+
+    public void testMinimumCutFindsTheDoorway() throws Exception {
+        buildState("..............\n" +
+                   "..............\n" +
+                   "..............\n" +
+                   "WWWWWW.WWWWWWW\n" +
+                   "WWWW.....WWWWW\n" +
+                   "WWWW..H..WWWWW\n" +
+                   "WWWW.....WWWWW\n" +
+                   "WWWWWWWWWWWWWW");
+        Registry r = _context.getRegistry();
+        CellList cut = new CellList();
+        Assert.assertEquals(_context.getChokepoints().minimumCut(r.getCell(r.tileAt(5, 6)), 2, cut), 1);
+        Assert.assertEquals(r.tileAt(cut.get(0)), r.tileAt(3, 6));
+
+        // Nothing reaches the outer radius once the doorway is closed
+        r.update(Ilk.WATER, r.tileAt(3, 6));
+        cut.clear();
+        Assert.assertEquals(_context.getChokepoints().minimumCut(r.getCell(r.tileAt(5, 6)), 2, cut), 0);
+    }
+}
@@ -28,9 +28,9 @@ public class CombatTest extends BaseTest {
                 "........................";
         buildState(map);
         List<Ant> ants = new ArrayList<Ant>(2);
-        ants.add(new Ant(Registry.Instance.getMyAnts().iterator().next()));
-        ants.add(Registry.Instance.getTeamedEnemyAnts().iterator().next());
-        CombatZone zone = new CombatZone(ants);
+        ants.add(new Ant(_context.getRegistry().getMyAnts().iterator().next()));
+        ants.add(_context.getRegistry().getTeamedEnemyAnts().iterator().next());
+        CombatZone zone = new CombatZone(_context, ants);
         zone.move(_dummyManager, new MovementHandler() {
             @Override
             public boolean move(Tile ant, Tile destination) {
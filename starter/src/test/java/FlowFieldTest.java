@@ -0,0 +1,51 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+@Test
+public class FlowFieldTest extends BaseTest {
+
+    private static final String MAP =
+            "....................\n" +
+            "..W.................\n" +
+            "..W.......W.........\n" +
+            "..W...A...W...F.....\n" +
+            "..W.......W.........\n" +
+            "..W.......WWWWW.....\n" +
+            "....................\n" +
+            "....................";
+
+    public void testFollowsShortestRoutes() throws Exception {
+        buildState(MAP);
+        Registry r = _context.getRegistry();
+        FlowFields fields = new FlowFields(_context);
+        Assert.assertTrue(fields.update(TargetingPolicy.Type.Food, r.getFoodTiles()));
+
+        Tile food = r.getFoodTiles().iterator().next();
+        for (int cell = 0; cell < r.getCellCount(); cell++) {
+            if (!r.isPassable(cell) || r.tileAt(cell).equals(food)) {
+                continue;
+            }
+            Tile from = r.tileAt(cell);
+            int distance = fields.getDistance(TargetingPolicy.Type.Food, from);
+            Assert.assertEquals(distance, new AStarRoute(_context, from, food).getDistance());
+            // Following the direction gets one step closer
+            Tile next = r.getTile(from, fields.getDirection(TargetingPolicy.Type.Food, from));
+            Assert.assertEquals(fields.getDistance(TargetingPolicy.Type.Food, next), distance - 1);
+        }
+    }
+
+    public void testRebuildsOnlyOnChange() throws Exception {
+        buildState(MAP);
+        Registry r = _context.getRegistry();
+        FlowFields fields = new FlowFields(_context);
+        Assert.assertTrue(fields.update(TargetingPolicy.Type.Food, r.getFoodTiles()));
+        Assert.assertFalse(fields.update(TargetingPolicy.Type.Food, r.getFoodTiles()));
+
+        r.update(Ilk.WATER, r.tileAt(3, 12));
+        Assert.assertTrue(fields.update(TargetingPolicy.Type.Food, r.getFoodTiles()));
+        Assert.assertTrue(fields.update(TargetingPolicy.Type.Food, Collections.singleton(r.tileAt(0, 0))));
+        Assert.assertFalse(fields.update(TargetingPolicy.Type.Food, Collections.singleton(r.tileAt(0, 0))));
+    }
+}
@@ -0,0 +1,83 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Test
+public class GameContextTest extends BaseTest {
+
+    public void testContextsAreIndependent() throws Exception {
+        ByteArrayOutputStream firstOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+        GameContext first = new GameContext(new PrintStream(firstOut, true));
+        GameContext second = new GameContext(new PrintStream(secondOut, true));
+        first.initialize(0, 0, 10, 10, 0, 50, 5, 0);
+        second.initialize(0, 0, 30, 20, 0, 50, 5, 0);
+
+        first.getRegistry().update(Ilk.MY_ANT, first.getRegistry().tileAt(2, 2));
+        first.getRegistry().issueOrder(first.getRegistry().tileAt(2, 2), Aim.EAST);
+
+        Assert.assertEquals(firstOut.toString().trim(), "o 2 2 e");
+        Assert.assertEquals(secondOut.size(), 0);
+        Assert.assertTrue(second.getRegistry().getMyAnts().isEmpty());
+        Assert.assertEquals(first.getMaximumCircumferenceRadius(), 4);
+        Assert.assertEquals(second.getMaximumCircumferenceRadius(), 9);
+
+        first.addPolicy(TargetingPolicy.Type.Food, 2, null, null, null);
+        Assert.assertNotNull(first.getPolicy(TargetingPolicy.Type.Food));
+        Assert.assertNull(second.getPolicy(TargetingPolicy.Type.Food));
+        Assert.assertNotSame(first.getPolicy(TargetingPolicy.Type.Unmanaged),
+                             second.getPolicy(TargetingPolicy.Type.Unmanaged));
+    }
+
+    public void testCloseStopsWorkers() throws Exception {
+        GameContext context = new GameContext(new PrintStream(new ByteArrayOutputStream(), true));
+        context.initialize(0, 0, 10, 10, 0, 50, 5, 0);
+        ExecutorService workers = context.getWorkers();
+        Assert.assertSame(context.getWorkers(), workers);
+        context.close();
+        Assert.assertTrue(workers.isShutdown());
+        context.close();
+        // A closed context starts a fresh pool if it's asked for one
+        ExecutorService restarted = context.getWorkers();
+        Assert.assertNotSame(restarted, workers);
+        Assert.assertFalse(restarted.isShutdown());
+        context.close();
+    }
+
+    public void testGamesShareTheHostsPool() throws Exception {
+        ExecutorService shared = Executors.newFixedThreadPool(2);
+        try {
+            GameContext first = new GameContext(new PrintStream(new ByteArrayOutputStream(), true), shared, 2);
+            GameContext second = new GameContext(new PrintStream(new ByteArrayOutputStream(), true), shared, 2);
+            first.initialize(0, 0, 10, 10, 0, 50, 5, 0);
+            second.initialize(0, 0, 10, 10, 0, 50, 5, 0);
+            Assert.assertSame(first.getWorkers(), shared);
+            Assert.assertSame(second.getWorkers(), shared);
+            Assert.assertEquals(first.getWorkerCount(), 2);
+            // Relaxation is split for the shared pool, not for the machine's processors
+            TargetInfluenceMap striped = new TargetInfluenceMap(first);
+            TargetInfluenceMap single = new TargetInfluenceMap(first, TargetInfluenceMap.Propagation.RELAXATION, 1);
+            Assert.assertEquals(striped.getStripeCount(), 2);
+            first.getRegistry().update(Ilk.FOOD, first.getRegistry().tileAt(3, 3));
+            first.getRegistry().update(Ilk.WATER, first.getRegistry().tileAt(5, 5));
+            for (TargetInfluenceMap map : Arrays.asList(striped, single)) {
+                map.reset(Collections.<Tile>emptyList(), Collections.<Tile>emptyList(), _dummyManager,
+                          Collections.<DefenseZone>emptyList(), Collections.<CombatZone>emptyList());
+            }
+            Assert.assertEquals(striped.getInfluence(first.getRegistry().tileAt(7, 7)),
+                                single.getInfluence(first.getRegistry().tileAt(7, 7)));
+            // Closing one game leaves the pool to the host and the other games
+            first.close();
+            Assert.assertFalse(shared.isShutdown());
+            Assert.assertSame(second.getWorkers(), shared);
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+}
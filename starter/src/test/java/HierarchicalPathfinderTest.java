@@ -0,0 +1,116 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+
+@Test
+public class HierarchicalPathfinderTest extends BaseTest {
+
+    private static final String MAP =
+            "....................\n" +
+            "..WWWWWWWWW.........\n" +
+            "..........W.........\n" +
+            "..........W....WWWW.\n" +
+            "...A......W.......W.\n" +
+            "WWWWWW....W.......W.\n" +
+            "..........W.......W.\n" +
+            "..........W.......W.\n" +
+            "....WWWWWWW.......W.\n" +
+            "..................W.\n" +
+            ".....W....WWWWWWWWW.\n" +
+            ".....W..............\n" +
+            ".....W..............\n" +
+            ".....W.....WWWWW....\n" +
+            ".....W.........W....\n" +
+            ".....WWWWWW....W....\n" +
+            "...............W....\n" +
+            "...............W....\n" +
+            "WWWWWWWW.......W....\n" +
+            "....................";
+
+    public void testRoutesReachGoalNoShorterThanTrueDistance() throws Exception {
+        buildState(MAP);
+        Registry r = _context.getRegistry();
+        HierarchicalPathfinder hpa = new HierarchicalPathfinder(r, 5);
+        int goal = r.getCell(14, 13);
+        Assert.assertTrue(hpa.update(new int[]{goal}, 1));
+        Assert.assertFalse(hpa.update(new int[]{goal}, 1));
+
+        int[] trueDistance = breadthFirst(r, goal);
+        for (int cell = 0; cell < r.getCellCount(); cell++) {
+            if (!r.isPassable(cell)) {
+                continue;
+            }
+            int distance = hpa.route(cell);
+            Assert.assertTrue(distance >= trueDistance[cell], "Shorter than possible from " + r.tileAt(cell));
+            Assert.assertTrue(distance <= trueDistance[cell] * 3 / 2 + 4, "Detour from " + r.tileAt(cell));
+            // Following the first steps gets there within the promised distance
+            int at = cell;
+            for (int steps = 0; steps < distance && at != goal; steps++) {
+                hpa.route(at);
+                at = r.neighbor(at, hpa.getDirection());
+                Assert.assertTrue(r.isPassable(at));
+            }
+            Assert.assertEquals(at, goal, "Lost on the way from " + r.tileAt(cell));
+        }
+    }
+
+    public void testWaterRebuildsOnlyNearbyChunks() throws Exception {
+        buildState(MAP);
+        Registry r = _context.getRegistry();
+        HierarchicalPathfinder hpa = new HierarchicalPathfinder(r, 5);
+        r.addTerrainListener(hpa);
+        int goal = r.getCell(14, 13);
+        hpa.update(new int[]{goal}, 1);
+        int rebuilds = hpa.getChunkRebuilds();
+        Assert.assertEquals(rebuilds, 16);
+
+        // Water in the top left chunk rebuilds it and its four neighbours
+        r.update(Ilk.WATER, r.tileAt(1, 1));
+        Assert.assertTrue(hpa.update(new int[]{goal}, 1));
+        Assert.assertEquals(hpa.getChunkRebuilds() - rebuilds, 5);
+        int[] trueDistance = breadthFirst(r, goal);
+        int from = r.getCell(0, 0);
+        Assert.assertTrue(hpa.route(from) >= trueDistance[from]);
+    }
+
+    public void testIdleAntHeadsForEnemyHill() throws Exception {
+        StringBuilder corridor = new StringBuilder();
+        for (int col = 0; col < 50; col++) {
+            corridor.append((col == 0 || col == 49) ? 'W' : (col == 8) ? 'F' : (col == 20) ? 'A' : '.');
+        }
+        String walls = "WWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWWW";
+        buildState(walls + "\n" + corridor + "\n" + walls);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameContext context = new GameContext(new PrintStream(out, true));
+        // The whole corridor is in view, so there are no unseen tiles to explore
+        context.initialize(0, 1000, 3, 50, 0, 5000, 5, 0);
+        Registry r = context.getRegistry();
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 50; col++) {
+                Tile t = r.tileAt(row, col);
+                Ilk ilk = _context.getRegistry().getIlk(t);
+                if (ilk != Ilk.LAND) {
+                    r.update(ilk, t);
+                }
+            }
+        }
+        r.updateHills(1, r.tileAt(1, 45));
+        r.setVision();
+        r.publishSnapshot();
+
+        // Influence pulls the ant west, to food 12 moves away ...
+        TargetInfluenceMap influence = new TargetInfluenceMap(context);
+        influence.reset(r.getMemory().getUnseenSample(), r.getMemory().getRememberedEnemyHills(),
+                        _dummyManager, Collections.<DefenseZone>emptyList(), Collections.<CombatZone>emptyList());
+        Assert.assertEquals(influence.getTargets(r.tileAt(1, 20)).next(), r.tileAt(1, 19));
+
+        // ... but with nothing close by, the ant is idle and routed to the enemy hill instead
+        new MyBot(context).doTurn();
+        context.close();
+        String orders = out.toString();
+        Assert.assertTrue(orders.contains("o 1 20 e"), orders);
+    }
+}
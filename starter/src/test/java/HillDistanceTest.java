@@ -0,0 +1,57 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+@Test
+public class HillDistanceTest extends BaseTest {
+
+    public void testRepairsMatchFreshSearch() throws Exception {
+        StringBuilder map = new StringBuilder();
+        for (int row = 0; row < 24; row++) {
+            for (int col = 0; col < 24; col++) {
+                map.append('.');
+            }
+            map.append(row < 23 ? "\n" : "");
+        }
+        buildState(map.toString());
+        Registry r = _context.getRegistry();
+        Tile hill = r.tileAt(12, 12), other = r.tileAt(2, 3);
+        r.updateHills(0, hill);
+        r.updateHills(0, other);
+        HillDistanceOracle oracle = _context.getHillDistances();
+        oracle.update(r.getMyHills());
+        assertMatches(r, oracle, hill, other);
+
+        // Water turns up a few cells at a time, as it would when exploring
+        Random random = new Random(22);
+        for (int turn = 0; turn < 40; turn++) {
+            for (int i = 0; i < 6; i++) {
+                Tile t = r.tileAt(random.nextInt(24), random.nextInt(24));
+                if (!t.equals(hill) && !t.equals(other)) {
+                    r.update(Ilk.WATER, t);
+                }
+            }
+            oracle.update(r.getMyHills());
+            assertMatches(r, oracle, hill, other);
+        }
+
+        // A lost hill is forgotten
+        oracle.update(Collections.singleton(hill));
+        Assert.assertFalse(oracle.tracks(other));
+        Assert.assertEquals(oracle.walkDistance(other, r.getCell(other)), HillDistanceOracle.UNREACHABLE);
+    }
+
+    private void assertMatches(Registry r, HillDistanceOracle oracle, Tile hill, Tile other) {
+        int[] fromHill = breadthFirst(r, r.getCell(hill));
+        int[] fromOther = breadthFirst(r, r.getCell(other));
+        for (int cell = 0; cell < r.getCellCount(); cell++) {
+            Assert.assertEquals(oracle.walkDistance(hill, cell), fromHill[cell], "Cell " + r.tileAt(cell));
+            Assert.assertEquals(oracle.walkDistance(other, cell), fromOther[cell], "Cell " + r.tileAt(cell));
+            int nearest = (fromHill[cell] < 0) ? fromOther[cell]
+                        : (fromOther[cell] < 0) ? fromHill[cell] : Math.min(fromHill[cell], fromOther[cell]);
+            Assert.assertEquals(oracle.walkDistanceToNearestHill(cell), nearest);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@Test
+public class InfluenceTest extends BaseTest {
+
+    public void testWavefrontTakesStrongestDecayedSeed() throws Exception {
+        buildState("..........F.....\n" +
+                   "................\n" +
+                   "...WWWWWWWWW....\n" +
+                   "...........W....\n" +
+                   "..E........W....\n" +
+                   "...........W....\n" +
+                   "................\n" +
+                   "................");
+        Registry r = _context.getRegistry();
+        List<Tile> unseen = Arrays.asList(r.tileAt(6, 13), r.tileAt(3, 7));
+        TargetInfluenceMap map = new TargetInfluenceMap(_context, TargetInfluenceMap.Propagation.WAVEFRONT);
+        map.reset(unseen, Collections.<Tile>emptyList(), _dummyManager,
+                  Collections.<DefenseZone>emptyList(), Collections.<CombatZone>emptyList());
+
+        List<Tile> seeds = new ArrayList<Tile>(r.getFoodTiles());
+        seeds.addAll(unseen);
+        seeds.addAll(r.getEnemyAnts());
+        Assert.assertEquals(seeds.size(), 4);
+        int[][] distances = new int[seeds.size()][];
+        for (int i = 0; i < seeds.size(); i++) {
+            distances[i] = breadthFirst(r, r.getCell(seeds.get(i)));
+        }
+        for (int cell = 0; cell < r.getCellCount(); cell++) {
+            Tile t = r.tileAt(cell);
+            if (!r.isPassable(cell) || seeds.contains(t)) {
+                continue;
+            }
+            double expected = 0.0;
+            for (int i = 0; i < seeds.size(); i++) {
+                if (distances[i][cell] >= 0) {
+                    expected = Math.max(expected, map.getInfluence(seeds.get(i))
+                                                  * Math.pow(TargetInfluenceMap.DECAY, distances[i][cell]));
+                }
+            }
+            Assert.assertEquals(map.getInfluence(t), expected, expected * 1e-9, "Cell " + t);
+        }
+    }
+
+    public void testWavefrontPassesThroughWeakerSeeds() throws Exception {
+        // The enemy ant is a weaker seed between the food and the cells beyond it
+        buildState("WWWWWWWWWW\n" +
+                   "WF.E.....W\n" +
+                   "WWWWWWWWWW");
+        Registry r = _context.getRegistry();
+        TargetInfluenceMap map = new TargetInfluenceMap(_context, TargetInfluenceMap.Propagation.WAVEFRONT);
+        map.reset(Collections.<Tile>emptyList(), Collections.<Tile>emptyList(), _dummyManager,
+                  Collections.<DefenseZone>emptyList(), Collections.<CombatZone>emptyList());
+        Tile food = r.tileAt(1, 1), enemy = r.tileAt(1, 3);
+        Assert.assertTrue(map.getInfluence(enemy) < map.getInfluence(food) * TargetInfluenceMap.DECAY * TargetInfluenceMap.DECAY);
+        for (int col = 4; col < 9; col++) {
+            Assert.assertEquals(map.getInfluence(r.tileAt(1, col)),
+                                map.getInfluence(food) * Math.pow(TargetInfluenceMap.DECAY, col - 1),
+                                map.getInfluence(food) * 1e-9, "Column " + col);
+        }
+    }
+
+    public void testEnginesAgreeOnMovesAlongACorridor() throws Exception {
+        buildState("WWWWWWWWWWWWWWWW\n" +
+                   "W..F...........W\n" +
+                   "WWWWWWWWWWWWWWWW");
+        Registry r = _context.getRegistry();
+        int[] toFood = breadthFirst(r, r.getCell(r.tileAt(1, 3)));
+        for (TargetInfluenceMap.Propagation propagation : TargetInfluenceMap.Propagation.values()) {
+            TargetInfluenceMap map = new TargetInfluenceMap(_context, propagation);
+            map.reset(Collections.<Tile>emptyList(), Collections.<Tile>emptyList(), _dummyManager,
+                      Collections.<DefenseZone>emptyList(), Collections.<CombatZone>emptyList());
+            for (int col = 1; col < 15; col++) {
+                Tile ant = r.tileAt(1, col);
+                Tile best = map.getTargets(ant).next();
+                Assert.assertEquals(toFood[r.getCell(best)], Math.max(0, toFood[r.getCell(ant)] - 1),
+                                    propagation + " from " + ant);
+            }
+        }
+    }
+
+    public void testStripesDoNotChangeRelaxation() throws Exception {
+        buildState("..........F.....\n" +
+                   "................\n" +
+                   "...WWWWWWWWW....\n" +
+                   "...........W....\n" +
+                   "..E........W....\n" +
+                   "...........W....\n" +
+                   "................");
+        Registry r = _context.getRegistry();
+        List<Tile> unseen = Arrays.asList(r.tileAt(6, 13), r.tileAt(3, 7));
+        TargetInfluenceMap single = new TargetInfluenceMap(_context, TargetInfluenceMap.Propagation.RELAXATION, 1);
+        TargetInfluenceMap striped = new TargetInfluenceMap(_context, TargetInfluenceMap.Propagation.RELAXATION, 3);
+        for (TargetInfluenceMap map : Arrays.asList(single, striped)) {
+            map.reset(unseen, Collections.<Tile>emptyList(), _dummyManager,
+                      Collections.<DefenseZone>emptyList(), Collections.<CombatZone>emptyList());
+        }
+        for (int cell = 0; cell < r.getCellCount(); cell++) {
+            Tile t = r.tileAt(cell);
+            Assert.assertEquals(striped.getInfluence(t), single.getInfluence(t), "Cell " + t);
+        }
+        // Influence spreads into the walled-off pocket, weaker than at the seed
+        Tile pocket = r.tileAt(4, 9), food = r.tileAt(0, 10);
+        Assert.assertTrue(single.getInfluence(pocket) > 0.0);
+        Assert.assertTrue(single.getInfluence(pocket) < single.getInfluence(food));
+    }
+
+    public void testBotUsesWavefrontOnLargeMaps() throws Exception {
+        buildState("....\n" +
+                   "....");
+        Assert.assertEquals(TargetInfluenceMap.selectPropagation(_context.getRegistry()),
+                            TargetInfluenceMap.Propagation.RELAXATION);
+        for (int size : new int[]{20, 64}) {
+            GameContext context = new GameContext(new PrintStream(new ByteArrayOutputStream(), true));
+            context.initialize(0, 1000, size, size, 0, 50, 5, 0);
+            Registry r = context.getRegistry();
+            r.update(Ilk.MY_ANT, r.tileAt(5, 5));
+            r.update(Ilk.FOOD, r.tileAt(5, 9));
+            r.setVision();
+            r.publishSnapshot();
+            MyBot bot = new MyBot(context);
+            bot.doTurn();
+            context.close();
+            Assert.assertEquals(bot.getInfluenceMap().getPropagation(),
+                                (size * size >= TargetInfluenceMap.LARGE_MAP_CELLS)
+                                ? TargetInfluenceMap.Propagation.WAVEFRONT : TargetInfluenceMap.Propagation.RELAXATION,
+                                "Map of " + size + "x" + size);
+        }
+    }
+
+    public void testRelaxationIsTheDefault() throws Exception {
+        StringBuilder map = new StringBuilder();
+        for (int row = 0; row < 64; row++) {
+            for (int col = 0; col < 64; col++) {
+                map.append('.');
+            }
+            map.append(row < 63 ? "\n" : "");
+        }
+        buildState(map.toString());
+        Assert.assertEquals(new TargetInfluenceMap(_context).getPropagation(),
+                            TargetInfluenceMap.Propagation.RELAXATION);
+    }
+}
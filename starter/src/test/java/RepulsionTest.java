@@ -1,5 +1,12 @@
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
 /**
  * TODO
  * Author: evan.pollan
@@ -9,9 +16,7 @@ import org.testng.annotations.Test;
 @Test
 public class RepulsionTest extends BaseTest {
 
-    public void testEgressRouteCount()
-            throws Exception {
-        final String map =
+    private static final String MAP =
                 "........................\n" +
                 "........................\n" +
                 "........................\n" +
@@ -26,18 +31,135 @@ public class RepulsionTest extends BaseTest {
                 "........................\n" +
                 "........................\n" +
                 "........................";
+
+    public void testEgressRouteCount()
+            throws Exception {
         // 4,8
-        buildState(map);
-        RepulsionPolicy policy = new RepulsionPolicy(new Tile(6, 8), 4);
-        policy.evacuate(Registry.Instance.getMyAnts(),
+        buildState(MAP);
+        final Registry r = _context.getRegistry();
+        final Set<Tile> moved = new HashSet<Tile>();
+        RepulsionPolicy policy = new RepulsionPolicy(_context, new Tile(6, 8), 4);
+        policy.evacuate(r.getMyAnts(),
                         _dummyManager,
                         new MovementHandler() {
                             @Override
                             public boolean move(Tile ant, Tile destination) {
                                 System.out.format("Evacuating [%s] by way of [%s]\n", ant, destination);
+                                Assert.assertEquals(r.getDistance(ant, destination), 1);
+                                moved.add(ant);
                                 return true;
                             }
                         });
+        Assert.assertEquals(moved, r.getMyAnts());
+    }
+
+    public void testSurplusAntsShareStrongpoint()
+            throws Exception {
+        // The doorway is the only strongpoint, and both ants head for it
+        buildState("..............\n" +
+                   "..............\n" +
+                   "..............\n" +
+                   "WWWWWW.WWWWWWW\n" +
+                   "WWWW..A..WWWWW\n" +
+                   "WWWW.A...WWWWW\n" +
+                   "WWWW.....WWWWW\n" +
+                   "WWWWWWWWWWWWWW");
+        final Registry r = _context.getRegistry();
+        RepulsionPolicy policy = new RepulsionPolicy(_context, new Tile(5, 6), 1);
+        Assert.assertEquals(policy.getDefenseZone().getStrongpoints().size(), 1);
+        // The route out to it is left for spare time
+        Assert.assertEquals(_context.getPathTasks().getPendingCount(), 1);
+        final Map<Tile, Tile> moves = new HashMap<Tile, Tile>();
+        policy.evacuate(r.getMyAnts(),
+                        _dummyManager,
+                        new MovementHandler() {
+                            @Override
+                            public boolean move(Tile ant, Tile destination) {
+                                moves.put(ant, destination);
+                                return true;
+                            }
+                        });
+        Assert.assertEquals(moves.keySet(), r.getMyAnts());
+        Assert.assertEquals(moves.get(new Tile(4, 6)), new Tile(3, 6));
+        Assert.assertEquals(r.getDistance(moves.get(new Tile(5, 5)), new Tile(3, 6)), 2);
+    }
+
+    public void testDistanceTableMatchesRoutes()
+            throws Exception {
+        buildState(MAP);
+        Registry r = _context.getRegistry();
+        Tile[] targets = {new Tile(0, 0), new Tile(10, 12), new Tile(5, 9)};
+        Tile[] sources = r.getMyAnts().toArray(new Tile[0]);
+        int[] targetCells = new int[targets.length];
+        for (int t = 0; t < targets.length; t++) {
+            targetCells[t] = r.getCell(targets[t]);
+        }
+        int[] sourceCells = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            sourceCells[i] = r.getCell(sources[i]);
+        }
+        DistanceTable table = new DistanceTable(r);
+        table.compute(targetCells, targets.length, sourceCells, sources.length, 100);
+        for (int t = 0; t < targets.length; t++) {
+            for (int i = 0; i < sources.length; i++) {
+                AStarRoute route = new AStarRoute(_context, sources[i], targets[t]);
+                Assert.assertEquals(table.getDistance(t, i), route.getDistance());
+                Tile next = r.getTile(sources[i], table.getDirection(t, i));
+                Assert.assertEquals(new AStarRoute(_context, next, targets[t]).getDistance(),
+                                    route.getDistance() - 1);
+            }
+        }
+        // Nothing beyond the limit
+        table.compute(targetCells, 1, sourceCells, sources.length, 5);
+        for (int i = 0; i < sources.length; i++) {
+            Assert.assertEquals(table.getDistance(0, i), DistanceTable.UNREACHABLE);
+        }
+    }
+
+    public void testMinCostAssignmentIsOptimal() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 50; trial++) {
+            int rows = 1 + random.nextInt(5);
+            int cols = 1 + random.nextInt(5);
+            int[] cost = new int[rows * cols];
+            for (int i = 0; i < cost.length; i++) {
+                cost[i] = (random.nextInt(6) == 0) ? MinCostAssignment.FORBIDDEN : random.nextInt(20);
+            }
+            int[] assignment = MinCostAssignment.solve(cost, rows, cols);
+            Set<Integer> used = new HashSet<Integer>();
+            int assigned = 0, total = 0;
+            for (int row = 0; row < rows; row++) {
+                if (assignment[row] >= 0) {
+                    Assert.assertTrue(used.add(assignment[row]));
+                    Assert.assertTrue(cost[row * cols + assignment[row]] != MinCostAssignment.FORBIDDEN);
+                    assigned++;
+                    total += cost[row * cols + assignment[row]];
+                }
+            }
+            int[] best = bruteForce(cost, rows, cols, 0, new boolean[cols]);
+            Assert.assertEquals(assigned, best[0]);
+            Assert.assertEquals(total, best[1]);
+        }
+    }
+
+    // Largest number of assigned pairs, then least total cost, over all assignments
+    private static int[] bruteForce(int[] cost, int rows, int cols, int row, boolean[] used) {
+        if (row == rows) {
+            return new int[]{0, 0};
+        }
+        int[] best = bruteForce(cost, rows, cols, row + 1, used);
+        for (int col = 0; col < cols; col++) {
+            if (!used[col] && cost[row * cols + col] != MinCostAssignment.FORBIDDEN) {
+                used[col] = true;
+                int[] rest = bruteForce(cost, rows, cols, row + 1, used);
+                used[col] = false;
+                int count = rest[0] + 1, total = rest[1] + cost[row * cols + col];
+                if (count > best[0] || (count == best[0] && total < best[1])) {
+                    best = new int[]{count, total};
+                }
+            }
+        }
+        return best;
     }
 
 }
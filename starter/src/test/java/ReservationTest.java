@@ -0,0 +1,67 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+@Test
+public class ReservationTest extends BaseTest {
+
+    public void testReservationsCarryOverTurns() {
+        ReservationTable table = new ReservationTable(100, 3);
+        table.startTurn(7);
+        table.reserve(11, 1, 10);
+        table.reserve(12, 2, 11);
+        table.reserve(13, 3, 12);
+        Assert.assertEquals(table.getOwner(11, 1), 10);
+        Assert.assertEquals(table.getOwner(12, 1), ReservationTable.FREE);
+        Assert.assertFalse(table.isInherited(11, 1));
+
+        // A turn later each reservation is one step closer
+        table.startTurn(8);
+        Assert.assertEquals(table.getOwner(11, 1), ReservationTable.FREE);
+        Assert.assertEquals(table.getOwner(12, 1), 11);
+        Assert.assertTrue(table.isInherited(12, 1));
+        Assert.assertEquals(table.getOwner(13, 2), 12);
+        Assert.assertEquals(table.getOwner(13, 3), ReservationTable.FREE);
+
+        // New reservations take over, and old ones lapse once their turn has passed
+        table.reserve(12, 1, 22);
+        Assert.assertEquals(table.getOwner(12, 1), 22);
+        Assert.assertFalse(table.isInherited(12, 1));
+        table.startTurn(11);
+        for (int step = 1; step <= 3; step++) {
+            for (int cell = 10; cell < 14; cell++) {
+                Assert.assertEquals(table.getOwner(cell, step), ReservationTable.FREE);
+            }
+        }
+    }
+
+    public void testAntsInLineAllMove() throws Exception {
+        buildState("WWWWWWWWWWW\n" +
+                   "WAAA.....FW\n" +
+                   "WWWWWWWWWWW");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameContext context = new GameContext(new PrintStream(out, true));
+        context.initialize(0, 1000, 3, 11, 0, 50, 5, 0);
+        Registry r = context.getRegistry();
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 11; col++) {
+                Tile t = r.tileAt(row, col);
+                Ilk ilk = _context.getRegistry().getIlk(t);
+                if (ilk != Ilk.LAND) {
+                    r.update(ilk, t);
+                }
+            }
+        }
+        r.setVision();
+        r.publishSnapshot();
+        new MyBot(context).doTurn();
+        context.close();
+        // The leading ant clears the way for the two behind it
+        String orders = out.toString();
+        Assert.assertTrue(orders.contains("o 1 3 e"), orders);
+        Assert.assertTrue(orders.contains("o 1 2 e"), orders);
+        Assert.assertTrue(orders.contains("o 1 1 e"), orders);
+    }
+}
@@ -72,12 +72,147 @@ public class RouteTest extends BaseTest {
         test(GAP_MAP, 6);
     }
 
+    public void testEngineMatchesBreadthFirstDistances() throws Exception {
+        buildState(WATER_MAP);
+        Registry r = _context.getRegistry();
+        PathEngine engine = _context.getPathEngine();
+        // Many searches on one engine exercise generation reuse
+        for (int start = 0; start < r.getCellCount(); start += 7) {
+            if (!r.isPassable(start)) {
+                continue;
+            }
+            int[] expected = breadthFirst(r, start);
+            for (int end = 0; end < r.getCellCount(); end += 3) {
+                if (r.isPassable(end)) {
+                    Assert.assertEquals(engine.findPath(start, end), expected[end],
+                                        String.format("Route from %d to %d", start, end));
+                }
+            }
+        }
+    }
+
+    public void testLandmarksCutExpansionsOnMaze() throws Exception {
+        // Serpentine corridors; each wall row has a single gap, alternating sides
+        StringBuilder maze = new StringBuilder();
+        final int size = 30;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                boolean wall = row == size - 1 ||
+                               (row % 2 == 1 && col != ((row % 4 == 1) ? size - 2 : 1));
+                maze.append(wall ? 'W' : '.');
+            }
+            maze.append(row < size - 1 ? "\n" : "");
+        }
+        buildState(maze.toString());
+        Registry r = _context.getRegistry();
+        Landmarks landmarks = _context.getLandmarks();
+        // Tables were computed before any water was known
+        Assert.assertEquals(landmarks.refresh(Integer.MAX_VALUE), landmarks.getCount());
+        Assert.assertEquals(landmarks.refresh(Integer.MAX_VALUE), 0);
+
+        PathEngine manhattan = new PathEngine(r);
+        PathEngine alt = _context.getPathEngine();
+        int start = r.getCell(0, 0), end = r.getCell(size - 2, size - 1);
+        Assert.assertEquals(alt.findPath(start, end), manhattan.findPath(start, end));
+        Assert.assertEquals(alt.getPathLength(), breadthFirst(r, start)[end]);
+        System.out.format("Maze expansions: manhattan=%d, landmarks=%d\n",
+                          manhattan.getExpansions(), alt.getExpansions());
+        Assert.assertTrue(alt.getExpansions() * 4 < manhattan.getExpansions());
+    }
+
+    public void testRouteCache() throws Exception {
+        buildState(SIMPLE_MAP);
+        Registry r = _context.getRegistry();
+        RouteCache cache = _context.getRouteCache();
+        Tile ant = r.tileAt(4, 6), food = r.tileAt(2, 12);
+
+        AStarRoute first = new AStarRoute(_context, ant, food);
+        AStarRoute again = new AStarRoute(_context, ant, food);
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getHits(), 1);
+        Assert.assertEquals(again.getDistance(), first.getDistance());
+
+        // Starting part way along reuses the cached suffix
+        AStarRoute suffix = new AStarRoute(_context, first.nextTile(), food);
+        Assert.assertEquals(cache.getSuffixHits(), 1);
+        Assert.assertEquals(suffix.getDistance(), first.getDistance() - 1);
+        PackedRoute packed = first.getPackedRoute();
+        for (int i = 0; i < suffix.getDistance(); i++) {
+            Assert.assertEquals(suffix.getPackedRoute().cell(i), packed.cell(i + 1));
+        }
+        int i = 0;
+        for (Tile t : first.routeTiles()) {
+            Assert.assertEquals(t, packed.tile(i++));
+        }
+        Assert.assertEquals(i, packed.length());
+        Assert.assertEquals(packed.suffix(packed.length()).length(), 0);
+
+        // Water on the route drops it, and the next request routes around the water
+        r.update(Ilk.WATER, suffix.nextTile());
+        AStarRoute rerouted = new AStarRoute(_context, ant, food);
+        Assert.assertEquals(cache.getMisses(), 2);
+        for (Tile t : rerouted.routeTiles()) {
+            Assert.assertTrue(r.getIlk(t).isPassable());
+        }
+        Assert.assertEquals(rerouted.getDistance(), breadthFirst(r, r.getCell(ant))[r.getCell(food)]);
+    }
+
+    public void testPathTaskResumesAcrossSteps() throws Exception {
+        buildState(WATER_MAP);
+        Registry r = _context.getRegistry();
+        int start = r.getCell(r.getMyAnts().iterator().next());
+        int end = r.getCell(r.getFoodTiles().iterator().next());
+
+        PathTask sliced = new PathTask(r, start, end);
+        int steps = 1;
+        while (!sliced.step(5)) {
+            steps++;
+        }
+        Assert.assertTrue(steps > 1);
+        Assert.assertEquals(sliced.getStatus(), PathTask.Status.DONE);
+        Assert.assertEquals(sliced.getRoute().length, breadthFirst(r, start)[end]);
+        Assert.assertEquals(sliced.getRoute()[sliced.getRoute().length - 1], end);
+
+        // Water on a cell the suspended search already reached sends it back to the start
+        PathTasks tasks = _context.getPathTasks();
+        PathTask task = tasks.submit(start, end);
+        Assert.assertFalse(task.step(10));
+        r.update(Ilk.WATER, r.tileAt(r.neighbor(start, Aim.EAST)));
+        Assert.assertEquals(task.getRestarts(), 1);
+        Assert.assertEquals(tasks.run(_dummyManager), 1);
+        Assert.assertEquals(tasks.getPendingCount(), 0);
+        Assert.assertEquals(task.getRoute().length, breadthFirst(r, start)[end]);
+
+        // The finished route is served from the cache
+        int hits = _context.getRouteCache().getHits();
+        AStarRoute route = new AStarRoute(_context, r.tileAt(start), r.tileAt(end));
+        Assert.assertEquals(_context.getRouteCache().getHits(), hits + 1);
+        Assert.assertEquals(route.getDistance(), task.getRoute().length);
+
+        // Queued tasks take turns with one set of search state
+        PathTask[] queued = new PathTask[5];
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = tasks.submit(r.neighbor(start, Aim.values()[i % 4]), end);
+        }
+        Assert.assertEquals(tasks.run(_dummyManager), queued.length);
+        Assert.assertEquals(tasks.getSearchStateCount(), 1);
+        // Finishing a task out of turn while the head is suspended needs a second
+        PathTask head = tasks.submit(start, r.getCell(r.tileAt(0, 0)));
+        PathTask behind = tasks.submit(start, r.getCell(r.tileAt(1, 1)));
+        Assert.assertFalse(head.step(1));
+        tasks.finish(behind);
+        Assert.assertTrue(behind.isFinished());
+        Assert.assertEquals(tasks.getSearchStateCount(), 2);
+        Assert.assertEquals(tasks.run(_dummyManager), 1);
+        Assert.assertEquals(head.getStatus(), PathTask.Status.DONE);
+    }
+
     private void test(String map, int expectedRouteLength) throws Exception {
         buildState(map);
         long start = System.currentTimeMillis();
-        for (Tile ant : Registry.Instance.getMyAnts()) {
-            for (Tile food : Registry.Instance.getFoodTiles()) {
-                AStarRoute r = new AStarRoute(ant, food);
+        for (Tile ant : _context.getRegistry().getMyAnts()) {
+            for (Tile food : _context.getRegistry().getFoodTiles()) {
+                AStarRoute r = new AStarRoute(_context, ant, food);
                 System.out.format("Route determined in %d ms\n", (System.currentTimeMillis()-start));
                 printRoute(r);
                 Assert.assertEquals(r.getDistance(), expectedRouteLength);
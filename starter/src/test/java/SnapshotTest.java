@@ -0,0 +1,32 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class SnapshotTest extends BaseTest {
+
+    public void testSnapshotIgnoresLaterOrders() throws Exception {
+        buildState(
+                "........\n" +
+                "..A.....\n" +
+                "....W...\n" +
+                "......E.");
+        Registry r = _context.getRegistry();
+        r.setVision();
+        WorldSnapshot snapshot = r.publishSnapshot();
+
+        Tile ant = r.tileAt(1, 2);
+        int from = r.getCell(ant);
+        int to = r.neighbor(from, Aim.EAST);
+        r.issueOrder(ant, Aim.EAST);
+
+        Assert.assertEquals(r.getIlk(from), Ilk.LAND);
+        Assert.assertEquals(r.getIlk(to), Ilk.MY_ANT);
+        Assert.assertEquals(snapshot.getIlk(from), Ilk.MY_ANT);
+        Assert.assertEquals(snapshot.getIlk(to), Ilk.LAND);
+        Assert.assertTrue(snapshot.isWater(r.getCell(2, 4)));
+        Assert.assertEquals(snapshot.getMyAnts(), new int[]{from});
+        Assert.assertEquals(snapshot.getEnemyAnts(), new int[]{r.getCell(3, 6)});
+        Assert.assertEquals(snapshot.getEnemyTeams(), new int[]{1});
+        Assert.assertSame(r.getSnapshot(), snapshot);
+    }
+}
@@ -0,0 +1,44 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Test
+public class StencilTest extends BaseTest {
+
+    public void testInteriorMatchesWrapped() throws Exception {
+        verify(20, 30, 77, 10 * 30 + 15);
+    }
+
+    public void testCornerWraps() throws Exception {
+        verify(20, 30, 77, 0);
+        verify(20, 30, 77, 19 * 30 + 29);
+    }
+
+    public void testAttackRadiusSize() throws Exception {
+        // radius2 = 5 covers the 3x3 block plus the four distance-2 orthogonals, less the
+        // corners of the 5x5 block
+        Assert.assertEquals(new Stencil(5, 20, 20).getSize(), 21);
+    }
+
+    private void verify(int rows, int cols, int radius2, int center) {
+        Stencil stencil = new Stencil(radius2, rows, cols);
+        int[] buffer = new int[stencil.getSize()];
+        int covered = stencil.apply(center, buffer);
+        Assert.assertEquals(covered, stencil.getSize());
+
+        Set<Integer> expected = new HashSet<Integer>();
+        int row = center / cols, col = center % cols;
+        for (int i = 0; i < stencil.getSize(); i++) {
+            int r = ((row + stencil.getRowDelta(i)) % rows + rows) % rows;
+            int c = ((col + stencil.getColDelta(i)) % cols + cols) % cols;
+            expected.add(r * cols + c);
+        }
+        Set<Integer> actual = new HashSet<Integer>();
+        for (int i = 0; i < covered; i++) {
+            actual.add(buffer[i]);
+        }
+        Assert.assertEquals(actual, expected);
+    }
+}
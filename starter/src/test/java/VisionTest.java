@@ -0,0 +1,71 @@
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Test
+public class VisionTest extends BaseTest {
+
+    private static final String MAP =
+            "........................\n" +
+            "..A.....................\n" +
+            "........................\n" +
+            "........................\n" +
+            "..........A.............\n" +
+            "...........A............\n" +
+            "........................\n" +
+            "........................\n" +
+            "........................\n" +
+            "........................\n" +
+            "........................\n" +
+            "........................\n" +
+            "........................\n" +
+            ".......................A";
+
+    public void testIncrementalMatchesFullStamp() throws Exception {
+        buildState(MAP);
+        Registry r = _context.getRegistry();
+        r.setVision();
+        assertVision();
+
+        // Move two ants, leave one in place and lose the fourth
+        List<Tile> next = new ArrayList<Tile>();
+        for (Tile ant : new ArrayList<Tile>(r.getMyAnts())) {
+            if (ant.getRow() == 1) {
+                r.issueOrder(ant, Aim.NORTH);
+                next.add(r.getTile(ant, Aim.NORTH));
+            } else if (ant.getRow() == 4) {
+                r.issueOrder(ant, Aim.WEST);
+                next.add(r.getTile(ant, Aim.WEST));
+            } else if (ant.getRow() == 5) {
+                next.add(ant);
+            }
+        }
+        r.clearMyAnts();
+        for (Tile ant : next) {
+            r.update(Ilk.MY_ANT, ant);
+        }
+        // And one new arrival
+        r.update(Ilk.MY_ANT, r.tileAt(10, 20));
+        r.setVision();
+        assertVision();
+    }
+
+    private void assertVision() {
+        Registry r = _context.getRegistry();
+        for (int row = 0; row < r.getRows(); row++) {
+            for (int col = 0; col < r.getCols(); col++) {
+                boolean expected = false;
+                for (Tile ant : r.getMyAnts()) {
+                    if (r.getDistance2(ant, r.tileAt(row, col)) <= r.getViewRadius2()) {
+                        expected = true;
+                        break;
+                    }
+                }
+                Assert.assertEquals(r.isVisible(row, col), expected,
+                                    String.format("Visibility of [%d %d]", row, col));
+            }
+        }
+    }
+}